@@ -0,0 +1,31 @@
+package com.tus.upload.config;
+
+import com.tus.upload.service.append.AppendEngine;
+import com.tus.upload.service.append.HeapAppendEngine;
+import com.tus.upload.service.append.PooledDirectAppendEngine;
+import com.tus.upload.service.append.TransferAppendEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AppendEngineConfig {
+
+    /**
+     * heap     - per-request heap buffer (original behaviour), default
+     * direct   - pooled off-heap buffers
+     * transfer - FileChannel.transferFrom; disables incremental checksums
+     */
+    @Bean
+    public AppendEngine appendEngine(@Value("${app.tus.append.engine:heap}") String engine,
+                                     @Value("${app.tus.append.buffer-size:131072}") int bufferSize,
+                                     @Value("${app.tus.append.direct-pool-size:0}") int poolSize) {
+        return switch (engine) {
+            case "heap" -> new HeapAppendEngine();
+            case "transfer" -> new TransferAppendEngine();
+            case "direct" -> new PooledDirectAppendEngine(
+                    poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 8, bufferSize);
+            default -> throw new IllegalStateException("Unknown app.tus.append.engine: " + engine);
+        };
+    }
+}
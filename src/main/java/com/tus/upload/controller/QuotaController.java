@@ -0,0 +1,31 @@
+package com.tus.upload.controller;
+
+import com.tus.upload.common.utils.TusAppUtils;
+import com.tus.upload.entity.dto.QuotaUsage;
+import com.tus.upload.exception.UploadException;
+import com.tus.upload.service.QuotaService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/quota")
+@RequiredArgsConstructor
+public class QuotaController {
+
+    private final QuotaService quotaService;
+
+    @GetMapping
+    public ResponseEntity<QuotaUsage> usage(@RequestHeader("X-User-Id") String userId) {
+        return ResponseEntity.ok(quotaService.usage(TusAppUtils.parseUUID(userId)));
+    }
+
+    @ExceptionHandler(UploadException.class)
+    public ResponseEntity<String> handleUploadException(UploadException e) {
+        return ResponseEntity.status(e.getStatus()).body(e.getMessage());
+    }
+}
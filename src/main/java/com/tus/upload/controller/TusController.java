@@ -2,7 +2,11 @@ package com.tus.upload.controller;
 
 import com.tus.upload.entity.V2TusUpload;
 import com.tus.upload.entity.dto.AppendResult;
+import com.tus.upload.entity.dto.ChecksumProbe;
+import com.tus.upload.exception.UploadException;
+import com.tus.upload.service.TusConcatenationService;
 import com.tus.upload.service.TusService;
+import com.tus.upload.service.append.UploadChecksumVerifier;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,6 +17,17 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.InputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 
 @RestController
@@ -22,6 +37,9 @@ import java.io.InputStream;
 public class TusController {
 
     private final TusService service;
+    private final TusConcatenationService concatenationService;
+
+    private static final int MAX_PROBE_CHECKSUMS = 1000;
 
     @Value("${app.tus.version:1.0.0}")
     private String tusVersion;
@@ -31,7 +49,8 @@ public class TusController {
         return ResponseEntity.noContent()
                 .header("Tus-Resumable", tusVersion)
                 .header("Tus-Version", tusVersion)
-                .header("Tus-Extension", "creation,termination,metadata")
+                .header("Tus-Extension", "creation,creation-with-upload,termination,metadata,concatenation,checksum,expiration")
+                .header("Tus-Checksum-Algorithm", String.join(",", UploadChecksumVerifier.ALGORITHMS))
                 .build();
     }
 
@@ -41,20 +60,76 @@ public class TusController {
             return ResponseEntity.status(412).build();
         }
 
-        // Service now returns the TUS ID (String)
-        String tusId = service.create(req);
+        String uploadConcat = req.getHeader("Upload-Concat");
+        if (uploadConcat != null && uploadConcat.startsWith("final;")) {
+            return createFinal(uploadConcat, req);
+        }
+
+        // creation-with-upload: the body (if any) is consumed by the service
+        V2TusUpload u = service.create(req);
+
+        String location = ServletUriComponentsBuilder.fromRequestUri(req)
+                .pathSegment(u.getTusId())
+                .build()
+                .toUriString();
+
+        log.info("Created new tus upload id={}, location={}", u.getTusId(), location);
+
+        var responseBuilder = ResponseEntity.status(HttpStatus.CREATED)
+                .header("Location", location)
+                .header("Tus-Resumable", tusVersion)
+                .header("Upload-Offset", u.getUploadOffset().toString());
+        if (u.getStatus() == V2TusUpload.Status.PENDING || u.getStatus() == V2TusUpload.Status.IN_PROGRESS) {
+            responseBuilder.header("Upload-Expires", httpDate(service.expiresAt(Instant.now())));
+        }
+        if (u.getAssetId() != null) {
+            responseBuilder.header("X-Asset-Id", u.getAssetId().toString());
+        }
+        return responseBuilder.build();
+    }
+
+    /**
+     * Lets a backup client find out, before uploading, which files the user already has.
+     * Those can be skipped entirely (or created with a "checksum" metadata entry, which
+     * completes without any PATCH).
+     */
+    @PostMapping("/checksums")
+    public ResponseEntity<ChecksumProbe.Response> existingChecksums(@RequestHeader("X-User-Id") String userId,
+                                                                    @RequestBody ChecksumProbe.Request probe) {
+        if (probe.checksums() == null || probe.checksums().size() > MAX_PROBE_CHECKSUMS) {
+            throw new UploadException(HttpStatus.BAD_REQUEST, "Between 0 and " + MAX_PROBE_CHECKSUMS + " checksums per request");
+        }
+        // hex -> the checksums as sent (the same file may be listed as hex and as base64)
+        Map<String, List<String>> sent = new LinkedHashMap<>();
+        List<byte[]> checksums = new ArrayList<>();
+        for (String c : probe.checksums()) {
+            byte[] sha1 = TusService.parseContentChecksum(c);
+            if (sha1 == null) continue;
+            List<String> forms = sent.computeIfAbsent(HexFormat.of().formatHex(sha1), k -> new ArrayList<>());
+            if (forms.isEmpty()) checksums.add(sha1);
+            forms.add(c);
+        }
+
+        Map<String, UUID> existing = new LinkedHashMap<>();
+        service.findExistingAssets(userId, checksums)
+                .forEach((hex, assetId) -> sent.get(hex).forEach(c -> existing.put(c, assetId)));
+        return ResponseEntity.ok(new ChecksumProbe.Response(existing));
+    }
+
+    private ResponseEntity<Void> createFinal(String uploadConcat, HttpServletRequest req) throws Exception {
+        V2TusUpload u = concatenationService.concatenate(uploadConcat, req.getHeader("Upload-Metadata"), req.getHeader("X-User-Id"));
 
         String location = ServletUriComponentsBuilder.fromRequestUri(req)
-                .pathSegment(tusId)
+                .pathSegment(u.getTusId())
                 .build()
                 .toUriString();
 
-        log.info("Created new tus upload id={}, location={}", tusId, location);
+        log.info("Created final concatenated upload id={} from [{}]", u.getTusId(), u.getConcatParts());
 
         return ResponseEntity.status(HttpStatus.CREATED)
                 .header("Location", location)
                 .header("Tus-Resumable", tusVersion)
-                .header("Upload-Offset", "0")
+                .header("Upload-Offset", u.getUploadOffset().toString())
                 .build();
     }
 
@@ -68,13 +143,35 @@ public class TusController {
 
         // Service returns the V2TusUpload entity
         V2TusUpload u = service.info(id);
+        if (u.getStatus() == V2TusUpload.Status.EXPIRED || u.getStatus() == V2TusUpload.Status.CANCELLED) {
+            return ResponseEntity.status(HttpStatus.GONE).header("Tus-Resumable", tusVersion).build();
+        }
         log.info("HEAD for id={} -> offset={}, length={}", id, u.getUploadOffset(), u.getUploadLength());
 
-        return ResponseEntity.noContent()
+        var responseBuilder = ResponseEntity.noContent()
                 .header("Tus-Resumable", tusVersion)
                 .header("Upload-Offset", u.getUploadOffset().toString())
-                .header("Upload-Length", u.getUploadLength().toString())
-                .build();
+                .header("Upload-Length", u.getUploadLength().toString());
+
+        if (u.getStatus() == V2TusUpload.Status.PENDING || u.getStatus() == V2TusUpload.Status.IN_PROGRESS) {
+            responseBuilder.header("Upload-Expires", httpDate(service.expiresAt(u.getUpdatedAt())));
+        }
+        responseBuilder.header("X-Upload-Status", u.getStatus().name());
+        if (u.getAssetId() != null) {
+            responseBuilder.header("X-Asset-Id", u.getAssetId().toString());
+        }
+        if (u.getConcatType() == V2TusUpload.ConcatType.PARTIAL) {
+            responseBuilder.header("Upload-Concat", "partial");
+        } else if (u.getConcatType() == V2TusUpload.ConcatType.FINAL) {
+            String self = req.getRequestURL().toString();
+            String base = self.substring(0, self.lastIndexOf('/') + 1);
+            String parts = Arrays.stream(u.getConcatParts().split(" "))
+                    .map(part -> base + part)
+                    .collect(Collectors.joining(" "));
+            responseBuilder.header("Upload-Concat", "final;" + parts);
+        }
+
+        return responseBuilder.build();
     }
 
     @PatchMapping(value = "/{id}", consumes = "application/offset+octet-stream")
@@ -91,16 +188,35 @@ public class TusController {
 
             // Service now returns our new AppendResult wrapper
             String userId = req.getHeader("X-User-Id");
-            V2TusUpload result = service.append(id, clientOffset, body, userId);
+            V2TusUpload result = service.append(id, clientOffset, body, userId, req.getHeader("Upload-Checksum"));
 
             var responseBuilder = ResponseEntity.noContent()
                     .header("Tus-Resumable", tusVersion)
                     .header("Upload-Offset", result.getUploadOffset().toString());
+            if (result.getStatus() == V2TusUpload.Status.IN_PROGRESS) {
+                responseBuilder.header("Upload-Expires", httpDate(service.expiresAt(result.getUpdatedAt())));
+            }
+            responseBuilder.header("X-Upload-Status", result.getStatus().name());
+            if (result.getAssetId() != null) {
+                responseBuilder.header("X-Asset-Id", result.getAssetId().toString());
+            }
 
             return responseBuilder.build();
         }
     }
 
+    private static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atOffset(ZoneOffset.UTC));
+    }
+
+    @ExceptionHandler(UploadException.class)
+    public ResponseEntity<String> handleUploadException(UploadException e) {
+        log.warn("Rejected tus request: {} {}", e.getStatus().value(), e.getMessage());
+        return ResponseEntity.status(e.getStatus())
+                .header("Tus-Resumable", tusVersion)
+                .body(e.getMessage());
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable("id") String id, HttpServletRequest req) throws Exception {
         log.info("DELETE /files/{} - terminating upload", id);
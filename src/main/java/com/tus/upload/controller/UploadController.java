@@ -1,19 +1,29 @@
 package com.tus.upload.controller;
 
 
+import com.tus.upload.entity.dto.ChunkRange;
+import com.tus.upload.exception.UploadException;
 import com.tus.upload.service.UploadService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -26,6 +36,12 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/v1/uploads")
 public class UploadController {
 
+    // Tomcat sendfile contract (NIO/NIO2/APR connectors)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final String finalDirectory;
     private final Path finalDir;
     private final UploadService service;
@@ -46,10 +62,11 @@ public class UploadController {
     // DTOs
     public record InitRequest(String filename, String contentType, long totalSize, int chunkSize) {}
     public record InitResponse(UUID uploadId, int totalChunks) {}
-    public record StatusResponse(String status, List<Integer> missing) {}
+    public record BatchResponse(List<Integer> stored) {}
+    public record StatusResponse(String status, int receivedChunks, int totalChunks, List<ChunkRange> missing) {}
 
     @PostMapping
-    public ResponseEntity<InitResponse> init(@RequestBody InitRequest req) {
+    public ResponseEntity<InitResponse> init(@RequestBody InitRequest req) throws IOException {
         if (req.filename() == null || req.totalSize() <= 0 || req.chunkSize() <= 0)
             return ResponseEntity.badRequest().build();
         var u = service.initUpload(req.filename(), req.contentType(), req.totalSize(), req.chunkSize());
@@ -70,10 +87,27 @@ public class UploadController {
         return ResponseEntity.accepted().build();
     }
 
+    /**
+     * Several chunks in one request: body is a sequence of frames
+     * {@code [int32 index][int32 length][bytes]} (big-endian), consecutive or sparse.
+     */
+    @PostMapping(value = "/{uploadId}/chunks", consumes = "application/x-chunk-batch")
+    public ResponseEntity<BatchResponse> putChunks(
+            @PathVariable("uploadId") UUID uploadId,
+            HttpServletRequest request
+    ) throws IOException {
+        try (InputStream is = request.getInputStream()) {
+            return ResponseEntity.accepted().body(new BatchResponse(service.storeChunkBatch(uploadId, is)));
+        }
+    }
+
     @GetMapping("/{uploadId}/status")
     public ResponseEntity<StatusResponse> status(@PathVariable("uploadId") UUID uploadId) {
         var upload = service.getUpload(uploadId);
-        return ResponseEntity.ok(new StatusResponse(upload.getStatus().name(), service.missingChunks(uploadId)));
+        var missing = service.missingRanges(upload);
+        int missingCount = missing.stream().mapToInt(r -> r.last() - r.first() + 1).sum();
+        return ResponseEntity.ok(new StatusResponse(upload.getStatus().name(),
+                upload.getTotalChunks() - missingCount, upload.getTotalChunks(), missing));
     }
 
     @PostMapping("/{uploadId}/commit")
@@ -82,102 +116,195 @@ public class UploadController {
         return ResponseEntity.noContent().build();
     }
 
+    @ExceptionHandler(UploadException.class)
+    public ResponseEntity<String> handleUploadException(UploadException e) {
+        return ResponseEntity.status(e.getStatus()).body(e.getMessage());
+    }
+
     @DeleteMapping("/{uploadId}")
     public ResponseEntity<Void> cancel(@PathVariable("uploadId") UUID uploadId) throws IOException {
         service.cancel(uploadId);
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Serves a finished file with HTTP range support: single ranges, multipart/byteranges
+     * for several, 416 for unsatisfiable ones. Validators are a strong ETag (size + mtime)
+     * and Last-Modified, so players can revalidate segments they already hold (304) and use
+     * If-Range. File bytes are written with FileChannel.transferTo, or handed to Tomcat's
+     * sendfile when the connector supports it.
+     */
     @GetMapping("/{filename}")
-    public ResponseEntity<StreamingResponseBody> streamVideo(
+    public void streamVideo(
             @PathVariable("filename") String filename,
-            @RequestHeader(value = "Range", required = false) String rangeHeader) throws Exception {
+            ServletWebRequest webRequest,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
         Path video = finalDir.resolve(filename);
         if (!Files.exists(video) || !Files.isRegularFile(video)) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
 
         long fileLength = Files.size(video);
+        long lastModified = Files.getLastModifiedTime(video).toMillis();
+        String etag = "\"" + Long.toHexString(fileLength) + "-" + Long.toHexString(lastModified) + "\"";
         String fileName = video.getFileName().toString();
-        MediaType contentType = MediaTypeFactory.getMediaType(fileName)
-                .orElse(MediaType.APPLICATION_OCTET_STREAM);
-
-        // No Range: full content
-        if (rangeHeader == null) {
-            StreamingResponseBody body = out -> {
-                try (InputStream in = Files.newInputStream(video)) {
-                    in.transferTo(out);
-                }
-            };
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
-                    .contentType(contentType)
-                    .contentLength(fileLength)
-                    .body(body);
+        String contentType = MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"");
+
+        // If-None-Match / If-Modified-Since (304), If-Match / If-Unmodified-Since (412)
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return;
         }
 
-        // Range present: partial content
-        Range r = parseRange(rangeHeader, fileLength);
-        long start = r.start, end = r.end, len = end - start + 1;
-
-        StreamingResponseBody body = out -> {
-            try (var channel = Files.newByteChannel(video, StandardOpenOption.READ)) {
-                channel.position(start);
-                byte[] buf = new byte[64 * 1024]; // 64KB buffer
-                long remaining = len;
-                while (remaining > 0) {
-                    int toRead = (int) Math.min(buf.length, remaining);
-                    int read = channel.read(java.nio.ByteBuffer.wrap(buf, 0, toRead));
-                    if (read < 0) break;
-                    out.write(buf, 0, read);
-                    remaining -= read;
-                }
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        List<ByteRange> ranges = rangeHeader != null && ifRangeMatches(request, etag, lastModified)
+                ? parseRanges(rangeHeader, fileLength)
+                : null;
+        boolean head = "HEAD".equals(request.getMethod());
+
+        // No (usable) Range: full content
+        if (ranges == null) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(contentType);
+            response.setContentLengthLong(fileLength);
+            if (!head) sendFile(video, 0, fileLength, request, response);
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength);
+            return;
+        }
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        if (ranges.size() == 1) {
+            ByteRange r = ranges.getFirst();
+            response.setHeader(HttpHeaders.CONTENT_RANGE, r.contentRange(fileLength));
+            response.setContentType(contentType);
+            response.setContentLengthLong(r.length());
+            if (!head) sendFile(video, r.start(), r.length(), request, response);
+            return;
+        }
+
+        // Several ranges: multipart/byteranges with an exact Content-Length
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange r : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + r.contentRange(fileLength) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + r.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) return;
+
+        OutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(video, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                transfer(channel, ranges.get(i).start(), ranges.get(i).length(), target);
             }
-        };
-
-        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength)
-                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
-                .contentType(contentType)
-                .contentLength(len)
-                .body(body);
+        }
+        out.write(closing);
+        out.flush();
     }
 
-    // Helper: range parsing (single range support)
-    static class Range { long start; long end; }
-
-    private Range parseRange(String rangeHeader, long fileLength) {
-        if (!rangeHeader.startsWith("bytes=")) {
-            throw new IllegalArgumentException("Invalid Range header: " + rangeHeader);
+    private static void sendFile(Path file, long start, long length, HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Tomcat writes the file itself (sendfile) once this request returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
         }
-        String spec = rangeHeader.substring("bytes=".length()).trim();
-        String rangeSpec = spec.split(",")[0].trim(); // only first range supported
-
-        Range r = new Range();
-        if (rangeSpec.startsWith("-")) {
-            long suffixLen = Long.parseLong(rangeSpec.substring(1));
-            r.start = Math.max(0, fileLength - suffixLen);
-            r.end = fileLength - 1;
-        } else if (rangeSpec.endsWith("-")) {
-            r.start = Long.parseLong(rangeSpec.substring(0, rangeSpec.length() - 1));
-            r.end = fileLength - 1;
-        } else {
-            String[] se = rangeSpec.split("-");
-            r.start = Long.parseLong(se[0]);
-            r.end = Long.parseLong(se[1]);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, start, length, Channels.newChannel(response.getOutputStream()));
         }
+    }
+
+    private static void transfer(FileChannel channel, long start, long length, WritableByteChannel target) throws IOException {
+        long sent = 0;
+        while (sent < length) {
+            long n = channel.transferTo(start + sent, length - sent, target);
+            if (n <= 0) throw new EOFException("File shrank while being served");
+            sent += n;
+        }
+    }
 
-        if (r.start < 0 || r.start >= fileLength) {
-            throw new IllegalArgumentException("Range start out of bounds: " + r.start);
+    /** If-Range: only honour Range when the client's copy is still current (strong comparison). */
+    static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
         }
-        if (r.end < r.start) {
-            r.end = fileLength - 1;
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
         }
-        r.end = Math.min(r.end, fileLength - 1);
-        return r;
     }
 
+    private static final int MAX_RANGES = 16;
+
+    record ByteRange(long start, long end) {
+        long length() { return end - start + 1; }
+
+        String contentRange(long fileLength) { return "bytes " + start + "-" + end + "/" + fileLength; }
+    }
+
+    /**
+     * Parses {@code bytes=a-b, c-, -n}. Returns null when the header is malformed or asks for
+     * too many ranges (then it is ignored and the full file is sent, as RFC 9110 allows),
+     * and an empty list when no range is satisfiable (416).
+     */
+    static List<ByteRange> parseRanges(String rangeHeader, long fileLength) {
+        if (!rangeHeader.startsWith("bytes=")) return null;
+        String[] specs = rangeHeader.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) return null;
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        try {
+            for (String raw : specs) {
+                String spec = raw.trim();
+                int dash = spec.indexOf('-');
+                if (dash < 0) return null;
+                long start;
+                long end;
+                if (dash == 0) {
+                    long suffixLen = Long.parseLong(spec.substring(1));
+                    if (suffixLen <= 0) continue;
+                    start = Math.max(0, fileLength - suffixLen);
+                    end = fileLength - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    end = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                    if (end < start) return null;
+                }
+                if (start >= fileLength) continue; // unsatisfiable, the others may still be fine
+                ranges.add(new ByteRange(start, Math.min(end, fileLength - 1)));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ranges;
+    }
 }
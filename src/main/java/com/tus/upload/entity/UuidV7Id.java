@@ -0,0 +1,16 @@
+package com.tus.upload.entity;
+
+import com.tus.upload.util.UuidV7;
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Time-ordered (UUIDv7) id, generated on insert. Use instead of {@code @GeneratedValue}. */
+@IdGeneratorType(UuidV7.Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface UuidV7Id {
+}
@@ -2,18 +2,25 @@ package com.tus.upload.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.ToString;
 
 import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "v2_tus_uploads")
+@Table(name = "v2_tus_uploads", indexes = {
+        // findByTusId, hottest query of the service
+        @Index(name = "ux_v2_tus_uploads_tus_id", columnList = "tus_id", unique = true),
+        // expiration reaper scans idle PENDING/IN_PROGRESS uploads
+        @Index(name = "idx_v2_tus_uploads_status_updated_at", columnList = "status, updated_at")
+})
 @Data
 public class V2TusUpload {
     @Id
-    @GeneratedValue
+    @UuidV7Id
     private UUID id;
 
+    @Column(nullable = false)
     private String tusId;
     private Long uploadLength;
     private Long uploadOffset = 0L;
@@ -22,14 +29,31 @@ public class V2TusUpload {
     private String filetype;
     private String tempPath;
     private String finalPath;
+    // Asset created from (or, for a dedup hit, matched by) this upload
+    private UUID assetId;
+    // X-User-Id of the final PATCH, kept for the asynchronous completion
+    private String userId;
+
+    // Exported ResumableSha1 state covering bytes [0, uploadOffset)
+    @ToString.Exclude
+    private byte[] checksumState;
 
     @Enumerated(EnumType.STRING)
     private Status status = Status.PENDING;
 
+    // tus concatenation extension: null for a regular upload
+    @Enumerated(EnumType.STRING)
+    private ConcatType concatType;
+    // FINAL only: space separated tusIds of the partial uploads, in order
+    private String concatParts;
+
     private Instant createdAt;
     private Instant updatedAt;
 
-    public enum Status { PENDING, IN_PROGRESS, COMPLETED, CANCELLED, FAILED }
+    /** COMPLETING: all bytes received, asset creation still running (see TusFinalizer). */
+    public enum Status { PENDING, IN_PROGRESS, COMPLETING, COMPLETED, CANCELLED, FAILED, EXPIRED }
+
+    public enum ConcatType { PARTIAL, FINAL }
 
     @PrePersist
     void prePersist() {
@@ -2,12 +2,15 @@ package com.tus.upload.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.ToString;
 
 import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "v2_uploads")
+@Table(name = "v2_uploads", indexes = {
+        @Index(name = "idx_v2_uploads_status_updated_at", columnList = "status, updated_at")
+})
 @Data
 public class V2Upload {
     @Id
@@ -22,10 +25,29 @@ public class V2Upload {
     @Enumerated(EnumType.STRING)
     private Status status = Status.PENDING;
 
+    // null for rows created before storage modes existed (= CHUNK_FILES)
+    @Enumerated(EnumType.STRING)
+    private StorageMode storageMode;
+
+    // Bit i set = chunk i received (same bit order as BitSet.valueOf / Postgres set_bit).
+    // null for rows created before the bitmap existed; those fall back to v2_upload_chunks.
+    @ToString.Exclude
+    private byte[] receivedBitmap;
+
+    // Set on commit: SHA-256 tree hash over the per-chunk SHA-256 digests (see ChunkTreeHash)
+    @ToString.Exclude
+    private byte[] contentHash;
+
     private Instant createdAt;
     private Instant updatedAt;
 
-    public enum Status { PENDING, IN_PROGRESS, COMPLETED, FAILED, CANCELLED }
+    public enum Status { PENDING, IN_PROGRESS, COMPLETED, FAILED, CANCELLED, EXPIRED }
+
+    /**
+     * CHUNK_FILES: one file per chunk, concatenated on commit.
+     * DIRECT: one preallocated file, each chunk written at idx * chunkSize; commit is a rename.
+     */
+    public enum StorageMode { CHUNK_FILES, DIRECT }
 
     @PrePersist void prePersist() {
         createdAt = Instant.now();
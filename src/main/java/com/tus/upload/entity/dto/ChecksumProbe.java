@@ -0,0 +1,16 @@
+package com.tus.upload.entity.dto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/** Bulk "which of these files do you already have" probe, checksums as SHA-1 hex or base64. */
+public final class ChecksumProbe {
+
+    private ChecksumProbe() {}
+
+    public record Request(List<String> checksums) {}
+
+    /** Checksum (as sent) -> id of the user's existing asset; unknown checksums are omitted. */
+    public record Response(Map<String, UUID> existing) {}
+}
@@ -0,0 +1,10 @@
+package com.tus.upload.entity.dto;
+
+/** Inclusive range of chunk indexes. */
+public record ChunkRange(int first, int last) {
+
+    @Override
+    public String toString() {
+        return first == last ? Integer.toString(first) : first + "-" + last;
+    }
+}
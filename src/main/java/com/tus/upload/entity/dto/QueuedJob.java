@@ -0,0 +1,5 @@
+package com.tus.upload.entity.dto;
+
+/** A post-upload job: target queue (thumbnail-queue, s3-sync-queue, ...) and its plain-string payload. */
+public record QueuedJob(String queue, String payload) {
+}
@@ -0,0 +1,10 @@
+package com.tus.upload.entity.dto;
+
+import java.util.UUID;
+
+/**
+ * Storage usage of a user: committed bytes, the quota (null = unlimited) and the bytes
+ * reserved by uploads still in flight.
+ */
+public record QuotaUsage(UUID userId, long usedBytes, Long quotaBytes, long reservedBytes) {
+}
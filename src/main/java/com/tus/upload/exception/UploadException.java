@@ -0,0 +1,22 @@
+package com.tus.upload.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatusCode;
+
+/**
+ * Upload error that maps to a specific HTTP status (409 offset conflict, 460 checksum mismatch, ...).
+ */
+@Getter
+public class UploadException extends RuntimeException {
+
+    private final HttpStatusCode status;
+
+    public UploadException(HttpStatusCode status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public UploadException(int status, String message) {
+        this(HttpStatusCode.valueOf(status), message);
+    }
+}
@@ -3,9 +3,12 @@ package com.tus.upload.repo;
 import com.tus.upload.common.entity.AssetExif;
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 @RequiredArgsConstructor
 public class AssetExifNativeRepository {
@@ -64,4 +67,30 @@ public class AssetExifNativeRepository {
 
         jdbcTemplate.update(sql, new BeanPropertySqlParameterSource(exif));
     }
+
+    /**
+     * Multi-row upsert of the exif rows created at upload completion (file size only,
+     * the metadata job fills in the rest). One statement for the whole group commit.
+     */
+    public void upsertFileSizes(List<AssetExif> exifs) {
+        if (exifs.isEmpty()) return;
+
+        StringBuilder sql = new StringBuilder("INSERT INTO asset_exif (asset_id, file_size_in_byte, update_id) VALUES ");
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        for (int i = 0; i < exifs.size(); i++) {
+            AssetExif exif = exifs.get(i);
+            if (i > 0) sql.append(", ");
+            sql.append("(:assetId").append(i).append(", :fileSize").append(i).append(", :updateId").append(i).append(")");
+            params.addValue("assetId" + i, exif.getAssetId())
+                    .addValue("fileSize" + i, exif.getFileSizeInByte())
+                    .addValue("updateId" + i, exif.getUpdateId());
+        }
+        sql.append("""
+             ON CONFLICT (asset_id) DO UPDATE SET
+                file_size_in_byte = EXCLUDED.file_size_in_byte,
+                update_id = EXCLUDED.update_id
+            """);
+
+        jdbcTemplate.update(sql.toString(), params);
+    }
 }
@@ -2,10 +2,24 @@ package com.tus.upload.repo;
 
 import com.tus.upload.common.entity.Asset;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface AssetRepository extends JpaRepository<Asset, UUID> {
-}
\ No newline at end of file
+
+    interface OwnedChecksum {
+        UUID getId();
+        byte[] getChecksum();
+    }
+
+    /** Dedup probe; only ever within one owner, a checksum alone is no proof of having the file. */
+    @Query("select a.id as id, a.checksum as checksum from Asset a where a.owner.id = :ownerId and a.checksum in :checksums")
+    List<OwnedChecksum> findByOwnerAndChecksumIn(@Param("ownerId") UUID ownerId,
+                                                 @Param("checksums") Collection<byte[]> checksums);
+}
@@ -0,0 +1,134 @@
+package com.tus.upload.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Registry of the content-addressed blob store: content_blobs (keyed by SHA-1 hex) with a
+ * reference count, and content_blob_refs, the asset -> blob references it counts. A blob is
+ * only ever referenced by assets whose bytes were compared equal to it (see ContentBlobStore).
+ * <p>
+ * Assets are deleted by other services, so references are not released on deletion:
+ * ContentBlobReclaimer drops the ones whose asset is gone and removes blobs left at zero.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ContentBlobNativeRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public record Reference(UUID assetId, String checksum, String path, long size) {}
+
+    public record Blob(String checksum, String path) {}
+
+    /**
+     * Records that the assets reference their blobs, creating the blob rows on first use.
+     * Idempotent per asset, so a retried completion never counts twice. Two JDBC batches,
+     * in checksum order so concurrent completions lock blob rows in the same order.
+     * Must run inside the caller's transaction.
+     */
+    public void addReferences(List<Reference> references) {
+        if (references.isEmpty()) return;
+        SqlParameterSource[] params = references.stream()
+                .sorted(Comparator.comparing(Reference::checksum))
+                .map(r -> new MapSqlParameterSource()
+                        .addValue("assetId", r.assetId())
+                        .addValue("checksum", r.checksum())
+                        .addValue("path", r.path())
+                        .addValue("size", r.size()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+            INSERT INTO content_blobs (checksum, path, size, ref_count, created_at, updated_at)
+            VALUES (:checksum, :path, :size, 0, now(), now())
+            ON CONFLICT (checksum) DO NOTHING
+            """, params);
+        // Counts only references that were not there yet
+        jdbcTemplate.batchUpdate("""
+            WITH ref AS (
+                INSERT INTO content_blob_refs (asset_id, checksum) VALUES (:assetId, :checksum)
+                ON CONFLICT (asset_id) DO NOTHING
+                RETURNING checksum)
+            UPDATE content_blobs SET ref_count = ref_count + 1, updated_at = now()
+             WHERE checksum = (SELECT checksum FROM ref)
+            """, params);
+    }
+
+    /** Another asset on the blob whose derivatives (thumbnail, playback video) are all done. */
+    public Optional<UUID> findProcessedAsset(String checksum, UUID excludeId) {
+        String sql = """
+            SELECT r.asset_id FROM content_blob_refs r
+              JOIN assets a ON a.id = r.asset_id
+             WHERE r.checksum = :checksum AND r.asset_id <> :excludeId
+               AND a.derivatives_completed >= a.derivatives_pending
+             LIMIT 1
+            """;
+        return jdbcTemplate.query(sql, new MapSqlParameterSource()
+                        .addValue("checksum", checksum)
+                        .addValue("excludeId", excludeId),
+                (rs, i) -> rs.getObject("asset_id", UUID.class)).stream().findFirst();
+    }
+
+    /**
+     * Drops up to {@code limit} references whose asset no longer exists and decrements their
+     * blobs. Returns the number of references dropped. SKIP LOCKED lets several nodes run it.
+     */
+    public int dropOrphanedReferences(int limit) {
+        String sql = """
+            WITH dropped AS (
+                DELETE FROM content_blob_refs
+                 WHERE asset_id IN (
+                       SELECT r.asset_id FROM content_blob_refs r
+                        WHERE NOT EXISTS (SELECT 1 FROM assets a WHERE a.id = r.asset_id)
+                        LIMIT :limit
+                        FOR UPDATE SKIP LOCKED)
+                RETURNING checksum)
+            UPDATE content_blobs b SET ref_count = b.ref_count - d.refs, updated_at = now()
+              FROM (SELECT checksum, count(*) AS refs FROM dropped GROUP BY checksum) d
+             WHERE b.checksum = d.checksum
+            RETURNING d.refs
+            """;
+        return jdbcTemplate.queryForList(sql, new MapSqlParameterSource("limit", limit), Long.class)
+                .stream().mapToInt(Long::intValue).sum();
+    }
+
+    /**
+     * Locks up to {@code limit} blobs that have had no references since {@code idleSince}.
+     * Must run inside a transaction that then deletes or keeps each of them.
+     */
+    public List<Blob> lockUnreferenced(Instant idleSince, int limit) {
+        String sql = """
+            SELECT checksum, path FROM content_blobs
+             WHERE ref_count <= 0 AND updated_at < :idleSince
+             ORDER BY updated_at
+             LIMIT :limit
+             FOR UPDATE SKIP LOCKED
+            """;
+        return jdbcTemplate.query(sql, new MapSqlParameterSource()
+                        .addValue("idleSince", Timestamp.from(idleSince))
+                        .addValue("limit", limit),
+                (rs, i) -> new Blob(rs.getString("checksum"), rs.getString("path")));
+    }
+
+    public void delete(List<String> checksums) {
+        if (checksums.isEmpty()) return;
+        jdbcTemplate.update("DELETE FROM content_blobs WHERE checksum IN (:checksums)",
+                new MapSqlParameterSource("checksums", checksums));
+    }
+
+    /** Postpones blobs whose file is still linked somewhere to the next grace period. */
+    public void touch(List<String> checksums) {
+        if (checksums.isEmpty()) return;
+        jdbcTemplate.update("UPDATE content_blobs SET updated_at = now() WHERE checksum IN (:checksums)",
+                new MapSqlParameterSource("checksums", checksums));
+    }
+}
@@ -0,0 +1,65 @@
+package com.tus.upload.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Claims idle uploads for the expiration reaper.
+ * Each call marks at most {@code limit} rows EXPIRED in one statement (index on status, updated_at)
+ * and returns what has to be deleted from disk. SKIP LOCKED lets several nodes reap concurrently.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ExpiredUploadNativeRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public record ExpiredTusUpload(String tusId, String tempPath, String userId) {}
+
+    public List<ExpiredTusUpload> expireTusUploads(Instant idleSince, int limit) {
+        String sql = """
+            UPDATE v2_tus_uploads SET status = 'EXPIRED', updated_at = now()
+             WHERE id IN (
+                   SELECT id FROM v2_tus_uploads
+                    WHERE status IN ('PENDING', 'IN_PROGRESS') AND updated_at < :idleSince
+                      -- a PATCH holding a live write lease is still streaming into the temp file
+                      AND (lease_until IS NULL OR lease_until < now())
+                    ORDER BY updated_at
+                    LIMIT :limit
+                    FOR UPDATE SKIP LOCKED)
+            RETURNING tus_id, temp_path, user_id
+            """;
+        return jdbcTemplate.query(sql, params(idleSince, limit),
+                (rs, i) -> new ExpiredTusUpload(rs.getString("tus_id"), rs.getString("temp_path"), rs.getString("user_id")));
+    }
+
+    public List<UUID> expireChunkedUploads(Instant idleSince, int limit) {
+        String sql = """
+            UPDATE v2_uploads SET status = 'EXPIRED', updated_at = now()
+             WHERE id IN (
+                   SELECT u.id FROM v2_uploads u
+                    WHERE u.status IN ('PENDING', 'IN_PROGRESS') AND u.updated_at < :idleSince
+                      -- chunks do not touch the upload row, so check for recent ones
+                      AND NOT EXISTS (SELECT 1 FROM v2_upload_chunks c
+                                       WHERE c.upload_id = u.id AND c.received_at >= :idleSince)
+                    ORDER BY u.updated_at
+                    LIMIT :limit
+                    FOR UPDATE OF u SKIP LOCKED)
+            RETURNING id
+            """;
+        return jdbcTemplate.query(sql, params(idleSince, limit), (rs, i) -> rs.getObject("id", UUID.class));
+    }
+
+    private static MapSqlParameterSource params(Instant idleSince, int limit) {
+        return new MapSqlParameterSource()
+                .addValue("idleSince", Timestamp.from(idleSince))
+                .addValue("limit", limit);
+    }
+}
@@ -0,0 +1,57 @@
+package com.tus.upload.repo;
+
+import com.tus.upload.entity.dto.QueuedJob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Transactional outbox for post-upload jobs. Rows are inserted in the same transaction as
+ * the asset and removed by JobOutboxRelay once they are in Redis. The job_outbox table is
+ * created by V1__upload_tables.sql.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JobOutboxRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private record ClaimedJob(long id, QueuedJob job) {}
+
+    /** Must run inside the caller's transaction. */
+    public void append(List<QueuedJob> jobs) {
+        if (jobs.isEmpty()) return;
+        jdbcTemplate.batchUpdate("INSERT INTO job_outbox (queue, payload, created_at) VALUES (?, ?, now())",
+                jobs, jobs.size(), (ps, job) -> {
+                    ps.setString(1, job.queue());
+                    ps.setString(2, job.payload());
+                });
+    }
+
+    /**
+     * Deletes and returns up to {@code limit} of the oldest jobs, skipping rows another
+     * node is relaying. Run inside a transaction that only commits once the jobs are
+     * published; a rollback puts them back.
+     */
+    public List<QueuedJob> claim(int limit) {
+        String sql = """
+            DELETE FROM job_outbox
+             WHERE id IN (
+                   SELECT id FROM job_outbox
+                    ORDER BY id
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED)
+            RETURNING id, queue, payload
+            """;
+        return jdbcTemplate.query(sql,
+                        (rs, i) -> new ClaimedJob(rs.getLong("id"), new QueuedJob(rs.getString("queue"), rs.getString("payload"))),
+                        limit)
+                .stream()
+                .sorted(Comparator.comparingLong(ClaimedJob::id))
+                .map(ClaimedJob::job)
+                .toList();
+    }
+}
@@ -0,0 +1,119 @@
+package com.tus.upload.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Leases on v2_tus_uploads rows (lease_owner, lease_until): the node holding a live lease is
+ * the only one allowed to touch the upload's temp file. The columns are deliberately not
+ * mapped on V2TusUpload, so a save() of a cached copy can never overwrite a lease.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TusLeaseRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Write lease, taken before the first byte of a PATCH is written: only if the upload is
+     * still writable at {@code offset} and nobody holds a live lease.
+     */
+    public boolean claimWrite(String tusId, long offset, String owner, Instant until, Instant now) {
+        String sql = """
+            UPDATE v2_tus_uploads SET lease_owner = :owner, lease_until = :until
+             WHERE tus_id = :tusId
+               AND upload_offset = :offset
+               AND status IN ('PENDING', 'IN_PROGRESS')
+               AND (lease_until IS NULL OR lease_until < :now OR lease_owner = :owner)
+            """;
+        return jdbcTemplate.update(sql, new MapSqlParameterSource()
+                .addValue("owner", owner)
+                .addValue("until", Timestamp.from(until))
+                .addValue("tusId", tusId)
+                .addValue("offset", offset)
+                .addValue("now", Timestamp.from(now))) == 1;
+    }
+
+    /**
+     * Offset compare-and-set by the holder of the write lease; gives the lease up in the
+     * same statement. Returns false if the lease was lost or the offset moved.
+     */
+    public boolean advance(String tusId, String owner, long expectedOffset, long newOffset, String status,
+                           byte[] checksumState, Instant now) {
+        String sql = """
+            UPDATE v2_tus_uploads
+               SET upload_offset = :newOffset, status = :status, checksum_state = :checksumState,
+                   updated_at = :now, lease_owner = NULL, lease_until = NULL
+             WHERE tus_id = :tusId
+               AND upload_offset = :expectedOffset
+               AND lease_owner = :owner
+               AND status IN ('PENDING', 'IN_PROGRESS')
+            """;
+        return jdbcTemplate.update(sql, new MapSqlParameterSource()
+                .addValue("newOffset", newOffset)
+                .addValue("status", status)
+                .addValue("checksumState", checksumState)
+                .addValue("now", Timestamp.from(now))
+                .addValue("tusId", tusId)
+                .addValue("expectedOffset", expectedOffset)
+                .addValue("owner", owner)) == 1;
+    }
+
+    /**
+     * Completion lease, taken just before the upload is marked COMPLETING, so the completion
+     * sweep never sees it unleased. Renewed by the finalizer's heartbeat until it is done.
+     */
+    public boolean claimCompletion(String tusId, String owner, Instant until, Instant now) {
+        String sql = """
+            UPDATE v2_tus_uploads SET lease_owner = :owner, lease_until = :until
+             WHERE tus_id = :tusId
+               AND (lease_until IS NULL OR lease_until < :now OR lease_owner = :owner)
+            """;
+        return jdbcTemplate.update(sql, new MapSqlParameterSource()
+                .addValue("owner", owner)
+                .addValue("until", Timestamp.from(until))
+                .addValue("tusId", tusId)
+                .addValue("now", Timestamp.from(now))) == 1;
+    }
+
+    /**
+     * Takes over up to {@code limit} COMPLETING uploads whose finalizer stopped renewing its
+     * lease (its node died). SKIP LOCKED lets every node sweep at once without doubling up.
+     */
+    public List<String> claimAbandonedCompletions(String owner, Instant until, Instant now, int limit) {
+        String sql = """
+            UPDATE v2_tus_uploads SET lease_owner = :owner, lease_until = :until
+             WHERE id IN (
+                   SELECT id FROM v2_tus_uploads
+                    WHERE status = 'COMPLETING' AND (lease_until IS NULL OR lease_until < :now)
+                    LIMIT :limit
+                    FOR UPDATE SKIP LOCKED)
+            RETURNING tus_id
+            """;
+        return jdbcTemplate.queryForList(sql, new MapSqlParameterSource()
+                .addValue("owner", owner)
+                .addValue("until", Timestamp.from(until))
+                .addValue("now", Timestamp.from(now))
+                .addValue("limit", limit), String.class);
+    }
+
+    public void release(String tusId, String owner) {
+        jdbcTemplate.update("UPDATE v2_tus_uploads SET lease_owner = NULL, lease_until = NULL WHERE tus_id = :tusId AND lease_owner = :owner",
+                new MapSqlParameterSource("tusId", tusId).addValue("owner", owner));
+    }
+
+    /** Heartbeat for every lease this node still holds. */
+    public int renew(Collection<String> tusIds, String owner, Instant until) {
+        return jdbcTemplate.update("UPDATE v2_tus_uploads SET lease_until = :until WHERE lease_owner = :owner AND tus_id IN (:tusIds)",
+                new MapSqlParameterSource("until", Timestamp.from(until))
+                        .addValue("owner", owner)
+                        .addValue("tusIds", tusIds));
+    }
+}
@@ -1,13 +1,48 @@
 package com.tus.upload.repo;
 
 import com.tus.upload.entity.V2TusUpload;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface TusUploadRepository extends JpaRepository<V2TusUpload, UUID> {
     Optional<V2TusUpload> findByTusId(String tusId);
+
+    List<V2TusUpload> findByTusIdIn(Collection<String> tusIds);
+
+    Slice<V2TusUpload> findByStatusIn(Collection<V2TusUpload.Status> statuses, Pageable pageable);
+
+    /**
+     * Marks completed partial uploads as consumed by the final upload assembled at
+     * {@code target}. Parts already claimed by another final upload are left alone, so a
+     * count below the number of parts means the race was lost.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update V2TusUpload u
+               set u.finalPath = :target
+             where u.tusId in :parts
+               and u.concatType = com.tus.upload.entity.V2TusUpload.ConcatType.PARTIAL
+               and u.status = com.tus.upload.entity.V2TusUpload.Status.COMPLETED
+               and u.finalPath is null
+            """)
+    int claimParts(@Param("parts") Collection<String> parts, @Param("target") String target);
+
+    /** Undoes {@link #claimParts} for the final upload at {@code target}. */
+    @Transactional
+    @Modifying
+    @Query("update V2TusUpload u set u.finalPath = null where u.tusId in :parts and u.finalPath = :target")
+    int releaseParts(@Param("parts") Collection<String> parts, @Param("target") String target);
 }
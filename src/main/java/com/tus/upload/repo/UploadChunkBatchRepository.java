@@ -0,0 +1,50 @@
+package com.tus.upload.repo;
+
+import com.tus.upload.entity.V2UploadChunk;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Records many chunks of one upload in a single transaction with two JDBC batches
+ * (chunk rows + received bitmap), for the multi-chunk PUT endpoint.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UploadChunkBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public void recordChunks(UUID uploadId, List<V2UploadChunk> received) {
+        if (received.isEmpty()) return;
+
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO v2_upload_chunks (upload_id, idx, size, checksum, stored_path, received_at)
+                VALUES (?, ?, ?, ?, ?, now())
+                ON CONFLICT (upload_id, idx) DO NOTHING
+                """, received, received.size(), (ps, c) -> {
+            ps.setObject(1, c.getUploadId());
+            ps.setInt(2, c.getIdx());
+            ps.setInt(3, c.getSize());
+            ps.setString(4, c.getChecksum());
+            ps.setString(5, c.getStoredPath());
+        });
+
+        // Same statement as UploadRepository.markChunkReceived
+        jdbcTemplate.batchUpdate("""
+                UPDATE v2_uploads
+                   SET received_bitmap = set_bit(received_bitmap, ?, 1),
+                       status = CASE WHEN status = 'PENDING' THEN 'IN_PROGRESS' ELSE status END,
+                       updated_at = now()
+                 WHERE id = ?
+                """, received, received.size(), (ps, c) -> {
+            ps.setInt(1, c.getIdx());
+            ps.setObject(2, uploadId);
+        });
+    }
+}
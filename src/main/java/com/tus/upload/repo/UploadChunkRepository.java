@@ -3,8 +3,10 @@ package com.tus.upload.repo;
 
 import com.tus.upload.entity.V2UploadChunk;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.UUID;
@@ -14,4 +16,20 @@ public interface UploadChunkRepository extends JpaRepository<V2UploadChunk, V2Up
     List<Integer> findReceivedIndexes(@Param("uploadId") UUID uploadId);
 
     long countByUploadId(UUID uploadId);
-}
\ No newline at end of file
+
+    List<V2UploadChunk> findByUploadId(UUID uploadId);
+
+    /** Idempotent chunk record: returns 0 when the chunk was already recorded. */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO v2_upload_chunks (upload_id, idx, size, checksum, stored_path, received_at)
+            VALUES (:uploadId, :idx, :size, :checksum, :storedPath, now())
+            ON CONFLICT (upload_id, idx) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("uploadId") UUID uploadId,
+                       @Param("idx") int idx,
+                       @Param("size") int size,
+                       @Param("checksum") String checksum,
+                       @Param("storedPath") String storedPath);
+}
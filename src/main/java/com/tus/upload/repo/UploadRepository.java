@@ -4,8 +4,10 @@ import com.tus.upload.entity.V2Upload;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -14,4 +16,19 @@ public interface UploadRepository extends JpaRepository<V2Upload, UUID> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select u from V2Upload u where u.id = :id")
     Optional<V2Upload> lockById(@Param("id") UUID id);
+
+    /**
+     * Records chunk {@code idx} in the received bitmap in one atomic statement, and moves a
+     * PENDING upload to IN_PROGRESS. Setting the bit is idempotent, so a retried chunk is harmless.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE v2_uploads
+               SET received_bitmap = set_bit(received_bitmap, :idx, 1),
+                   status = CASE WHEN status = 'PENDING' THEN 'IN_PROGRESS' ELSE status END,
+                   updated_at = now()
+             WHERE id = :id
+            """, nativeQuery = true)
+    int markChunkReceived(@Param("id") UUID id, @Param("idx") int idx);
 }
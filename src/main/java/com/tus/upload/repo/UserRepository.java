@@ -1,11 +1,30 @@
 package com.tus.upload.repo;
 
 import com.tus.upload.common.entity.User;
+import com.tus.upload.entity.dto.QuotaUsage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
-}
\ No newline at end of file
+
+    /**
+     * Atomic quota charge: a single UPDATE, so parallel completions of one user neither
+     * lose updates nor hold the row longer than their own short transaction.
+     * Returns 0 if the user does not exist.
+     */
+    @Transactional
+    @Modifying
+    @Query("update User u set u.quotaUsageInBytes = u.quotaUsageInBytes + :delta where u.id = :id")
+    int addQuotaUsage(@Param("id") UUID id, @Param("delta") long delta);
+
+    @Query("select new com.tus.upload.entity.dto.QuotaUsage(u.id, u.quotaUsageInBytes, u.quotaSizeInBytes, 0L) from User u where u.id = :id")
+    Optional<QuotaUsage> findQuotaUsage(@Param("id") UUID id);
+}
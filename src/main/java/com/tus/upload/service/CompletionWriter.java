@@ -0,0 +1,223 @@
+package com.tus.upload.service;
+
+import com.tus.upload.common.entity.Asset;
+import com.tus.upload.common.entity.AssetExif;
+import com.tus.upload.common.entity.User;
+import com.tus.upload.entity.V2TusUpload;
+import com.tus.upload.entity.dto.QueuedJob;
+import com.tus.upload.repo.AssetExifNativeRepository;
+import com.tus.upload.repo.ContentBlobNativeRepository;
+import com.tus.upload.repo.JobOutboxRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the DB side of upload completions: asset, quota charge, exif, blob reference, upload
+ * state and follow-up jobs, all in one transaction.
+ * <p>
+ * With group commit on, completions arriving within app.tus.completion.group-commit.window
+ * of each other share that transaction: assets go out as one Hibernate insert batch, exif
+ * as one multi-row upsert, blob, upload and outbox rows as JDBC batches, and quota as one
+ * UPDATE per user. Each caller blocks until its batch committed. If a batch fails, its
+ * completions are retried one by one so a single bad upload cannot fail the others.
+ * <p>
+ * A completion whose asset already exists (an earlier attempt committed, then the node
+ * died before it could tell) only gets its upload row marked COMPLETED again: quota, exif,
+ * blob and jobs were written by that attempt and are not repeated.
+ */
+@Component
+@Slf4j
+public class CompletionWriter {
+
+    private static final String COMPLETE_UPLOAD_SQL = """
+            UPDATE v2_tus_uploads
+               SET status = 'COMPLETED', final_path = ?, asset_id = ?, user_id = ?, updated_at = ?,
+                   lease_owner = NULL, lease_until = NULL
+             WHERE tus_id = ?
+            """;
+
+    /** A completion whose file work is done; only DB writes are left. {@code blob} is null for a separate copy. */
+    public record Completion(V2TusUpload upload, Asset asset, ContentBlobStore.StoredBlob blob, UUID ownerId, long size,
+                             List<QueuedJob> jobs) {}
+
+    private record Pending(Completion completion, CompletableFuture<Void> committed) {}
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final AssetExifNativeRepository assetExifRepository;
+    private final ContentBlobNativeRepository contentBlobRepository;
+    private final JobOutboxRepository jobOutbox;
+    private final QuotaService quotaService;
+    private final Executor taskExecutor;
+    private final boolean groupCommit;
+    private final Duration window;
+    private final int maxBatch;
+
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    public CompletionWriter(EntityManager entityManager,
+                            TransactionTemplate transactionTemplate,
+                            JdbcTemplate jdbcTemplate,
+                            AssetExifNativeRepository assetExifRepository,
+                            ContentBlobNativeRepository contentBlobRepository,
+                            JobOutboxRepository jobOutbox,
+                            QuotaService quotaService,
+                            @Qualifier("taskExecutor") Executor taskExecutor,
+                            @Value("${app.tus.completion.group-commit.enabled:true}") boolean groupCommit,
+                            @Value("${app.tus.completion.group-commit.window:10ms}") Duration window,
+                            @Value("${app.tus.completion.group-commit.max-batch:200}") int maxBatch) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.assetExifRepository = assetExifRepository;
+        this.contentBlobRepository = contentBlobRepository;
+        this.jobOutbox = jobOutbox;
+        this.quotaService = quotaService;
+        this.taskExecutor = taskExecutor;
+        this.groupCommit = groupCommit;
+        this.window = window;
+        this.maxBatch = maxBatch;
+    }
+
+    /** Returns once the completion is committed; rethrows its failure. */
+    public void write(Completion completion) {
+        if (!groupCommit) {
+            writeBatch(List.of(completion));
+            return;
+        }
+        Pending pending = new Pending(completion, new CompletableFuture<>());
+        queue.add(pending);
+        if (draining.compareAndSet(false, true)) {
+            taskExecutor.execute(this::drain);
+        }
+        try {
+            pending.committed().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    private void drain() {
+        try {
+            sleep(window); // let concurrent completions join this batch
+            List<Pending> batch = new ArrayList<>(maxBatch);
+            while (queue.drainTo(batch, maxBatch) > 0) {
+                commit(batch);
+                batch = new ArrayList<>(maxBatch);
+            }
+        } finally {
+            draining.set(false);
+            // A completion may have been queued after the last drainTo
+            if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                taskExecutor.execute(this::drain);
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        try {
+            writeBatch(batch.stream().map(Pending::completion).toList());
+            batch.forEach(p -> p.committed().complete(null));
+            log.debug("Group-committed {} upload completions", batch.size());
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.getFirst().committed().completeExceptionally(e);
+                return;
+            }
+            log.warn("Group commit of {} completions failed, writing them one by one: {}", batch.size(), e.getMessage());
+            for (Pending p : batch) {
+                try {
+                    writeBatch(List.of(p.completion()));
+                    p.committed().complete(null);
+                } catch (RuntimeException single) {
+                    p.committed().completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private void writeBatch(List<Completion> completions) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            Set<UUID> written = existingAssetIds(completions);
+            List<Completion> fresh = completions.stream()
+                    .filter(c -> !written.contains(c.asset().getId()))
+                    .toList();
+            for (Completion c : fresh) {
+                c.asset().setOwner(entityManager.getReference(User.class, c.ownerId()));
+                entityManager.persist(c.asset());
+            }
+            entityManager.flush(); // before the exif rows that reference the assets
+
+            // Fails the transaction if a user does not exist. In user id order, so concurrent
+            // batches lock the user rows in the same order and cannot deadlock on them.
+            Map<UUID, Long> chargePerUser = fresh.stream()
+                    .collect(Collectors.groupingBy(Completion::ownerId, TreeMap::new, Collectors.summingLong(Completion::size)));
+            chargePerUser.forEach(quotaService::charge);
+
+            assetExifRepository.upsertFileSizes(fresh.stream().map(CompletionWriter::exifOf).toList());
+            contentBlobRepository.addReferences(fresh.stream()
+                    .filter(c -> c.blob() != null)
+                    .map(c -> new ContentBlobNativeRepository.Reference(
+                            c.asset().getId(), c.blob().checksum(), c.blob().path().toString(), c.size()))
+                    .toList());
+
+            Timestamp now = Timestamp.from(Instant.now());
+            jdbcTemplate.batchUpdate(COMPLETE_UPLOAD_SQL, completions, completions.size(), (ps, c) -> {
+                ps.setString(1, c.upload().getFinalPath());
+                ps.setObject(2, c.asset().getId());
+                ps.setString(3, c.ownerId().toString());
+                ps.setTimestamp(4, now);
+                ps.setString(5, c.upload().getTusId());
+            });
+
+            jobOutbox.append(fresh.stream().flatMap(c -> c.jobs().stream()).toList());
+        });
+    }
+
+    private Set<UUID> existingAssetIds(List<Completion> completions) {
+        List<UUID> ids = completions.stream().map(c -> c.asset().getId()).toList();
+        return Set.copyOf(entityManager
+                .createQuery("select a.id from Asset a where a.id in :ids", UUID.class)
+                .setParameter("ids", ids)
+                .getResultList());
+    }
+
+    private static AssetExif exifOf(Completion c) {
+        AssetExif exif = new AssetExif();
+        exif.setAssetId(c.asset().getId());
+        exif.setFileSizeInByte(c.size());
+        exif.setUpdateId(UUID.randomUUID());
+        return exif;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
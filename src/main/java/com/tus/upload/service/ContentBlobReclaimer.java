@@ -0,0 +1,93 @@
+package com.tus.upload.service;
+
+import com.tus.upload.repo.ContentBlobNativeRepository;
+import com.tus.upload.repo.ContentBlobNativeRepository.Blob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reclaims blobs of the content-addressed store (see ContentBlobStore) that no asset uses
+ * any more. First drops references whose asset was deleted, then deletes blobs that have been
+ * at zero references for app.storage.blobs.reclaim-grace. The grace period covers completions
+ * that already linked a blob but have not committed their reference yet; a blob file that
+ * still has other hard links is kept regardless.
+ */
+@Component
+@Slf4j
+public class ContentBlobReclaimer {
+
+    private final ContentBlobNativeRepository blobs;
+    private final ContentBlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration grace;
+    private final int batchSize;
+
+    public ContentBlobReclaimer(ContentBlobNativeRepository blobs,
+                                ContentBlobStore blobStore,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${app.storage.blobs.reclaim-grace:24h}") Duration grace,
+                                @Value("${app.storage.blobs.reclaim-batch-size:500}") int batchSize) {
+        this.blobs = blobs;
+        this.blobStore = blobStore;
+        this.transactionTemplate = transactionTemplate;
+        this.grace = grace;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.storage.blobs.reclaim-interval-ms:3600000}", initialDelayString = "${app.storage.blobs.reclaim-initial-delay-ms:300000}")
+    public void reclaim() {
+        try {
+            int dropped = 0;
+            int batch;
+            do {
+                batch = transactionTemplate.execute(tx -> blobs.dropOrphanedReferences(batchSize));
+                dropped += batch;
+            } while (batch > 0);
+
+            int deleted = 0;
+            Pass pass;
+            do {
+                pass = transactionTemplate.execute(tx -> deleteUnreferenced());
+                deleted += pass.deleted();
+            } while (pass.locked() == batchSize);
+
+            if (dropped > 0 || deleted > 0) {
+                log.info("Dropped {} references of deleted assets, reclaimed {} blobs", dropped, deleted);
+            }
+        } catch (RuntimeException e) {
+            log.error("Content blob reclaimer failed", e);
+        }
+    }
+
+    private record Pass(int locked, int deleted) {}
+
+    /** Runs in one transaction, so a blob row goes only together with its file. */
+    private Pass deleteUnreferenced() {
+        List<Blob> candidates = blobs.lockUnreferenced(Instant.now().minus(grace), batchSize);
+        List<String> deleted = new ArrayList<>();
+        List<String> kept = new ArrayList<>();
+        for (Blob blob : candidates) {
+            boolean gone;
+            try {
+                gone = blobStore.deleteIfUnlinked(Path.of(blob.path()));
+            } catch (IOException e) {
+                log.warn("Could not delete blob {}: {}", blob.path(), e.getMessage());
+                gone = false;
+            }
+            (gone ? deleted : kept).add(blob.checksum());
+        }
+        blobs.delete(deleted);
+        blobs.touch(kept);
+        return new Pass(candidates.size(), deleted.size());
+    }
+}
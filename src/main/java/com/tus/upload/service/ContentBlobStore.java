@@ -0,0 +1,130 @@
+package com.tus.upload.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Content-addressed store for completed originals: each distinct file is kept once under
+ * {@code finalDir/blobs/ab/cd/<sha1>} and the per-user path of every asset with those bytes
+ * is a hard link to it. Phone backups re-upload the same media constantly; those completions
+ * become a link. Assets always keep their per-user path as originalPath.
+ * <p>
+ * A SHA-1 match alone never merges two uploads: the bytes are compared first, and an upload
+ * that differs from the blob of its checksum keeps its own copy. The same happens when the
+ * filesystem cannot hard-link.
+ * <p>
+ * References (asset -> blob) are counted in content_blobs by CompletionWriter, in the
+ * transaction of the completion. ContentBlobReclaimer removes blobs nobody references.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ContentBlobStore {
+
+    @Value("${app.storage.final-dir}")
+    private String finalDir;
+
+    /** {@code deduplicated} = the bytes were already stored and the uploaded copy was dropped. */
+    public record StoredBlob(String checksum, Path path, boolean deduplicated) {}
+
+    /**
+     * Moves the upload at {@code source} to {@code target}, sharing the bytes with the blob of
+     * its checksum. Returns null when target ended up as a separate copy (no blob reference).
+     * Idempotent: a completion retried after a failed commit finds its file where the previous
+     * attempt left it.
+     */
+    public StoredBlob store(byte[] sha1, Path source, Path target) throws IOException {
+        String checksum = HexFormat.of().formatHex(sha1);
+        Path blob = blobPath(checksum);
+        Files.createDirectories(blob.getParent());
+        Files.createDirectories(target.getParent());
+
+        // Named after the target, so a retry finds a file the previous attempt staged
+        Path staging = blob.resolveSibling(checksum + "."
+                + UUID.nameUUIDFromBytes(target.toString().getBytes(StandardCharsets.UTF_8)) + ".part");
+        if (Files.exists(source)) {
+            Files.move(source, staging, StandardCopyOption.REPLACE_EXISTING);
+        } else if (!Files.exists(staging)) {
+            return alreadyStored(checksum, blob, target);
+        }
+
+        try {
+            // Atomic: whoever creates the blob name first owns it, with complete content
+            Files.createLink(blob, staging);
+            Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING);
+            return new StoredBlob(checksum, blob, false);
+        } catch (FileAlreadyExistsException e) {
+            if (Files.mismatch(staging, blob) == -1L) {
+                if (link(blob, target)) {
+                    Files.delete(staging);
+                    log.info("Deduplicated upload against blob {} ({} bytes)", checksum, Files.size(blob));
+                    return new StoredBlob(checksum, blob, true);
+                }
+            } else {
+                log.warn("Upload {} has SHA-1 {} but differs from the stored blob, keeping a separate copy", target, checksum);
+            }
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.warn("Could not hard-link blob {}, keeping a separate copy: {}", checksum, e.getMessage());
+        }
+        Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING);
+        return null;
+    }
+
+    /** Retry of a completion whose file is already at {@code target}. */
+    private StoredBlob alreadyStored(String checksum, Path blob, Path target) throws IOException {
+        if (!Files.exists(target)) {
+            throw new NoSuchFileException(target.toString(), null, "upload file is neither in temp nor at its final path");
+        }
+        // A retry cannot tell whether it was the first to store the bytes; assume it was
+        return Files.exists(blob) && Files.isSameFile(blob, target) ? new StoredBlob(checksum, blob, false) : null;
+    }
+
+    private boolean link(Path blob, Path target) {
+        try {
+            Files.deleteIfExists(target);
+            Files.createLink(target, blob);
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            log.warn("Could not hard-link {} to {}, keeping a separate copy: {}", target, blob, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the file of an unreferenced blob unless something still links to it (other
+     * services delete an asset by removing its per-user path). Returns whether the file is gone.
+     */
+    public boolean deleteIfUnlinked(Path blob) throws IOException {
+        int links;
+        try {
+            links = (Integer) Files.getAttribute(blob, "unix:nlink");
+        } catch (NoSuchFileException e) {
+            return true;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return false; // cannot tell, keep it
+        }
+        if (links > 1) {
+            log.debug("Blob {} has no references but {} links, keeping it", blob, links);
+            return false;
+        }
+        Files.deleteIfExists(blob);
+        return true;
+    }
+
+    private Path blobPath(String checksum) {
+        return Path.of(finalDir, "blobs", checksum.substring(0, 2), checksum.substring(2, 4), checksum);
+    }
+}
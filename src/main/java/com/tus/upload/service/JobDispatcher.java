@@ -0,0 +1,127 @@
+package com.tus.upload.service;
+
+import com.tus.upload.entity.dto.QueuedJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Publishes post-upload jobs (thumbnail, transcode, metadata, s3-sync, ...) to Redis.
+ * A batch (see JobOutboxRelay) goes out in one pipelined round trip.
+ * This class holds no jobs itself: a job survives a crash or a Redis outage only because it
+ * stays in the job_outbox until publish() returned.
+ *
+ * list:   RPUSH to the legacy list queues ({@code thumbnail-queue}, ...), values JSON-encoded by
+ *         the RedisTemplate serializer exactly as before, so existing LPOP workers keep working.
+ *         The default.
+ * stream: XADD to one stream per queue under its own key ({@code thumbnail-stream}, ...; a list
+ *         key cannot become a stream), field {@code id} = the plain payload, read by consumer
+ *         group app.jobs.consumer-group (an entry stays pending until a worker XACKs it).
+ *
+ * Cutover from list to stream: deploy workers that XREADGROUP the *-stream keys next to the
+ * LPOP workers, then set app.jobs.transport=stream on every node. During the rolling restart
+ * both kinds of key receive jobs. Stop the LPOP workers once the *-queue lists are empty (LLEN 0).
+ */
+@Component
+@Slf4j
+public class JobDispatcher {
+
+    public static final String VIDEO_TRANSCODE = "video-transcode-queue";
+    public static final String THUMBNAIL = "thumbnail-queue";
+    public static final String METADATA = "metadata-queue";
+    public static final String S3_SYNC = "s3-sync-queue";
+    /**
+     * Payload {@code <newAssetId>:<sourceAssetId>}, queued instead of thumbnail, transcode and
+     * s3-sync when the new asset's bytes are identical to an asset whose derivatives are done.
+     * The worker copies the source's derivatives and S3 objects to the new asset and counts
+     * them in its derivatives_completed; if the source is gone by then, it queues the normal jobs.
+     */
+    public static final String DERIVATIVE_CLONE = "derivative-clone-queue";
+
+    private static final List<String> QUEUES = List.of(VIDEO_TRANSCODE, THUMBNAIL, METADATA, S3_SYNC, DERIVATIVE_CLONE);
+    private static final byte[] ID_FIELD = "id".getBytes(StandardCharsets.UTF_8);
+
+    public enum Transport { STREAM, LIST }
+
+    private final StringRedisTemplate redis;
+    private final RedisSerializer<Object> listValues;
+    private final UploadMetrics metrics;
+    private final Transport transport;
+    private final String consumerGroup;
+    private final long streamMaxLen;
+
+    @SuppressWarnings("unchecked")
+    public JobDispatcher(StringRedisTemplate redis,
+                         RedisTemplate<String, Object> redisTemplate,
+                         UploadMetrics metrics,
+                         @Value("${app.jobs.transport:list}") Transport transport,
+                         @Value("${app.jobs.consumer-group:upload-workers}") String consumerGroup,
+                         @Value("${app.jobs.stream-max-len:1000000}") long streamMaxLen) {
+        this.redis = redis;
+        this.listValues = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        this.metrics = metrics;
+        this.transport = transport;
+        this.consumerGroup = consumerGroup;
+        this.streamMaxLen = streamMaxLen;
+    }
+
+    /** Writes {@code jobs} in one pipelined round trip. Throws if Redis is unavailable. */
+    public void publish(List<QueuedJob> jobs) {
+        if (jobs.isEmpty()) return;
+        long start = System.nanoTime();
+        redis.executePipelined((RedisCallback<Object>) connection -> {
+            for (QueuedJob job : jobs) write(connection, job);
+            return null;
+        });
+        metrics.jobDispatch(transport.name().toLowerCase(Locale.ROOT), jobs.size(), System.nanoTime() - start);
+        log.debug("Published {} jobs via {}", jobs.size(), transport);
+    }
+
+    private void write(RedisConnection connection, QueuedJob job) {
+        if (transport == Transport.LIST) {
+            connection.listCommands().rPush(job.queue().getBytes(StandardCharsets.UTF_8), listValues.serialize(job.payload()));
+            return;
+        }
+        byte[] key = streamKey(job.queue()).getBytes(StandardCharsets.UTF_8);
+        byte[] payload = job.payload().getBytes(StandardCharsets.UTF_8);
+        ByteRecord record = StreamRecords.rawBytes(Map.of(ID_FIELD, payload)).withStreamKey(key);
+        connection.streamCommands().xAdd(record, XAddOptions.maxlen(streamMaxLen).approximateTrimming(true));
+    }
+
+    /** {@code thumbnail-queue} -> {@code thumbnail-stream}. */
+    static String streamKey(String queue) {
+        return queue.substring(0, queue.length() - "-queue".length()) + "-stream";
+    }
+
+    /** Creates the streams and consumer groups up front, so no job is published before a group exists. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createConsumerGroups() {
+        if (transport != Transport.STREAM) return;
+        for (String queue : QUEUES) {
+            try {
+                redis.opsForStream().createGroup(streamKey(queue), ReadOffset.from("0"), consumerGroup);
+            } catch (DataAccessException e) {
+                if (!String.valueOf(e.getMostSpecificCause().getMessage()).contains("BUSYGROUP")) {
+                    log.warn("Could not create consumer group {} on {}: {}", consumerGroup, streamKey(queue), e.getMessage());
+                }
+            }
+        }
+    }
+}
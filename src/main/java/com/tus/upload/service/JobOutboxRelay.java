@@ -0,0 +1,53 @@
+package com.tus.upload.service;
+
+import com.tus.upload.entity.dto.QueuedJob;
+import com.tus.upload.repo.JobOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Moves jobs from the outbox table to Redis in large batches. Every node polls; SKIP LOCKED
+ * hands each batch to exactly one of them. A batch is deleted in the same transaction that
+ * publishes it, so a Redis failure (or a crash) leaves the jobs in the outbox: at-least-once.
+ */
+@Component
+@Slf4j
+public class JobOutboxRelay {
+
+    private final JobOutboxRepository outbox;
+    private final JobDispatcher dispatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public JobOutboxRelay(JobOutboxRepository outbox,
+                          JobDispatcher dispatcher,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${app.jobs.outbox.batch-size:1000}") int batchSize) {
+        this.outbox = outbox;
+        this.dispatcher = dispatcher;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.jobs.outbox.poll-interval-ms:200}")
+    public void relay() {
+        try {
+            int relayed;
+            do {
+                relayed = transactionTemplate.execute(tx -> {
+                    List<QueuedJob> jobs = outbox.claim(batchSize);
+                    dispatcher.publish(jobs);
+                    return jobs.size();
+                });
+            } while (relayed == batchSize);
+        } catch (DataAccessException e) {
+            log.warn("Relaying outbox jobs failed, will retry: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.tus.upload.service;
+
+import com.tus.upload.entity.dto.QuotaUsage;
+import com.tus.upload.exception.UploadException;
+import com.tus.upload.repo.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Quota bookkeeping. Usage is only ever changed by atomic increments, so reads straight
+ * from the user row are consistent with every committed asset.
+ * <p>
+ * Unfinished uploads hold a reservation of their Upload-Length in Redis (hash of tusId ->
+ * bytes plus a running total per user), taken atomically by a Lua script at creation, so
+ * an over-quota upload is refused before any bytes flow. Completion charges the user row
+ * and then drops the reservation; terminate and expiry just drop it. Each reservation also
+ * has its own deadline, so one that was never dropped (a lost release) lapses on its own
+ * even while the user keeps creating uploads.
+ */
+@Service
+@Slf4j
+public class QuotaService {
+
+    // Drops the reservations whose deadline passed; KEYS[1] reservations hash, KEYS[2] total,
+    // KEYS[3] deadlines (zset of tusId scored by expiry, epoch seconds)
+    private static final String PRUNE = """
+            local function prune(now)
+              local expired = redis.call('ZRANGEBYSCORE', KEYS[3], '-inf', now)
+              for _, tusId in ipairs(expired) do
+                local bytes = redis.call('HGET', KEYS[1], tusId)
+                if bytes then
+                  redis.call('HDEL', KEYS[1], tusId)
+                  redis.call('DECRBY', KEYS[2], bytes)
+                end
+              end
+              if #expired > 0 then
+                redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', now)
+                if tonumber(redis.call('GET', KEYS[2]) or '0') <= 0 then redis.call('DEL', KEYS[2]) end
+              end
+            end
+            """;
+
+    // KEYS as in PRUNE; ARGV: tusId, bytes, used, limit (-1 = unlimited), ttl seconds, now
+    private static final RedisScript<Long> RESERVE = new DefaultRedisScript<>(PRUNE + """
+            prune(ARGV[6])
+            if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then return 1 end
+            local reserved = tonumber(redis.call('GET', KEYS[2]) or '0')
+            local limit = tonumber(ARGV[4])
+            if limit >= 0 and tonumber(ARGV[3]) + reserved + tonumber(ARGV[2]) > limit then return 0 end
+            redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('INCRBY', KEYS[2], ARGV[2])
+            redis.call('ZADD', KEYS[3], tonumber(ARGV[6]) + tonumber(ARGV[5]), ARGV[1])
+            -- This reservation has the latest deadline, so the keys outlive every other one
+            for i = 1, 3 do redis.call('EXPIRE', KEYS[i], ARGV[5]) end
+            return 1
+            """, Long.class);
+
+    // KEYS as in PRUNE; ARGV: tusId
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            redis.call('ZREM', KEYS[3], ARGV[1])
+            local bytes = redis.call('HGET', KEYS[1], ARGV[1])
+            if not bytes then return 0 end
+            redis.call('HDEL', KEYS[1], ARGV[1])
+            if redis.call('DECRBY', KEYS[2], bytes) <= 0 then redis.call('DEL', KEYS[2]) end
+            return tonumber(bytes)
+            """, Long.class);
+
+    // KEYS as in PRUNE; ARGV: now
+    private static final RedisScript<Long> RESERVED = new DefaultRedisScript<>(PRUNE + """
+            prune(ARGV[1])
+            return tonumber(redis.call('GET', KEYS[2]) or '0')
+            """, Long.class);
+
+    private final UserRepository userRepository;
+    private final StringRedisTemplate redis;
+    private final Duration reservationTtl;
+
+    public QuotaService(UserRepository userRepository,
+                        StringRedisTemplate redis,
+                        @Value("${app.expiration.tus-ttl:24h}") Duration uploadTtl) {
+        this.userRepository = userRepository;
+        this.redis = redis;
+        // Outlives the upload itself; the reaper normally releases well before
+        this.reservationTtl = uploadTtl.multipliedBy(2);
+    }
+
+    /** Charges {@code bytes} to the user; joins the caller's transaction (asset insert). */
+    public void charge(UUID userId, long bytes) {
+        if (userRepository.addQuotaUsage(userId, bytes) == 0) {
+            throw new IllegalStateException("User not found");
+        }
+    }
+
+    /**
+     * Reserves {@code bytes} for upload {@code tusId}, or fails with 413 if committed usage
+     * plus all open reservations would exceed the user's quota. Idempotent per tusId.
+     * If Redis is unavailable the upload is let through (it is still charged on completion).
+     */
+    public void reserve(UUID userId, String tusId, long bytes) {
+        QuotaUsage usage = committed(userId);
+        long limit = usage.quotaBytes() != null ? usage.quotaBytes() : -1;
+        Long ok;
+        try {
+            ok = redis.execute(RESERVE, keys(userId), tusId, Long.toString(bytes),
+                    Long.toString(usage.usedBytes()), Long.toString(limit), Long.toString(reservationTtl.toSeconds()),
+                    Long.toString(Instant.now().getEpochSecond()));
+        } catch (DataAccessException e) {
+            log.warn("Quota reservation for user {} skipped, Redis unavailable: {}", userId, e.getMessage());
+            return;
+        }
+        if (ok == null || ok == 0) {
+            throw new UploadException(HttpStatus.PAYLOAD_TOO_LARGE, "Upload of " + bytes + " bytes exceeds the remaining quota");
+        }
+    }
+
+    /** Drops the reservation of {@code tusId}; no-op if there is none. */
+    public void release(String userId, String tusId) {
+        if (userId == null) return;
+        try {
+            redis.execute(RELEASE, keys(UUID.fromString(userId)), tusId);
+        } catch (IllegalArgumentException | DataAccessException e) {
+            log.warn("Could not release quota reservation of tusId={}: {}", tusId, e.getMessage());
+        }
+    }
+
+    /** Committed usage plus the bytes reserved by unfinished uploads. */
+    public QuotaUsage usage(UUID userId) {
+        QuotaUsage usage = committed(userId);
+        long reserved;
+        try {
+            Long total = redis.execute(RESERVED, keys(userId), Long.toString(Instant.now().getEpochSecond()));
+            reserved = total != null ? total : 0;
+        } catch (DataAccessException e) {
+            reserved = 0;
+        }
+        return new QuotaUsage(usage.userId(), usage.usedBytes(), usage.quotaBytes(), reserved);
+    }
+
+    private QuotaUsage committed(UUID userId) {
+        return userRepository.findQuotaUsage(userId)
+                .orElseThrow(() -> new UploadException(HttpStatus.NOT_FOUND, "User not found: " + userId));
+    }
+
+    // Hash tag keeps the keys of a user in one cluster slot
+    private static List<String> keys(UUID userId) {
+        String prefix = "quota:res:{" + userId + "}";
+        return List.of(prefix, prefix + ":total", prefix + ":exp");
+    }
+}
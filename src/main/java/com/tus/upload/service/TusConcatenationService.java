@@ -0,0 +1,157 @@
+package com.tus.upload.service;
+
+import com.tus.upload.entity.V2TusUpload;
+import com.tus.upload.exception.UploadException;
+import com.tus.upload.repo.TusUploadRepository;
+import com.tus.upload.util.ResumableSha1;
+import com.tus.upload.util.UuidV7;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * tus "concatenation" extension: clients upload N partial uploads in parallel and then
+ * create a final upload from them. It is assembled here and then completed like any other
+ * upload whose last byte arrived (COMPLETING + TusFinalizer when completion is async).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TusConcatenationService {
+
+    private final TusUploadRepository repo;
+    private final TusService tusService;
+
+    @Value("${app.storage.temp-dir}")
+    private String tempDir;
+
+    /**
+     * Builds the final upload described by an {@code Upload-Concat: final;<url> <url>...} header.
+     * <p>
+     * The parts are claimed in one conditional UPDATE first, so two final uploads naming the
+     * same part cannot both use it (the loser gets 409). They are copied with
+     * FileChannel.transferTo, which the JDK turns into an in-kernel copy (copy_file_range,
+     * a reflink on CoW filesystems) when they share a volume. Only the first part's saved
+     * digest is carried over; the rest of the SHA-1 is computed by the completion, off the
+     * request thread. The part files are deleted only once the final upload is committed;
+     * if completion fails, the final upload is FAILED and the parts are released for
+     * another attempt (see TusService).
+     */
+    public V2TusUpload concatenate(String uploadConcat, String metadata, String userId) throws Exception {
+        if (userId == null || userId.isBlank()) {
+            throw new UploadException(HttpStatus.BAD_REQUEST, "X-User-Id is required for a final upload");
+        }
+        List<V2TusUpload> parts = loadParts(parseFinalParts(uploadConcat), userId);
+        List<String> partIds = parts.stream().map(V2TusUpload::getTusId).toList();
+        Map<String, String> headerData = TusService.parseUploadMetadata(metadata);
+
+        V2TusUpload upload = new V2TusUpload();
+        upload.setTusId(UuidV7.randomUUID().toString());
+        upload.setUploadLength(parts.stream().mapToLong(V2TusUpload::getUploadLength).sum());
+        upload.setMetadata(metadata);
+        upload.setFilename(headerData.get("filename"));
+        upload.setFiletype(headerData.get("filetype"));
+        upload.setConcatType(V2TusUpload.ConcatType.FINAL);
+        upload.setConcatParts(String.join(" ", partIds));
+        upload.setUserId(userId);
+
+        Path target = Path.of(tempDir, upload.getTusId() + ".bin");
+        if (repo.claimParts(partIds, target.toString()) != parts.size()) {
+            repo.releaseParts(partIds, target.toString());
+            throw new UploadException(HttpStatus.CONFLICT, "Partial uploads are already used by another final upload");
+        }
+
+        ResumableSha1 sha1;
+        try {
+            sha1 = assemble(parts, target);
+        } catch (Exception e) {
+            repo.releaseParts(partIds, target.toString());
+            throw e;
+        }
+
+        upload.setTempPath(target.toString());
+        upload.setUploadOffset(upload.getUploadLength());
+        upload.setStatus(V2TusUpload.Status.IN_PROGRESS);
+        repo.save(upload);
+        log.info("Concatenated {} partial uploads into tusId={} ({} bytes)", parts.size(), upload.getTusId(), upload.getUploadLength());
+
+        tusService.completeConcatenated(upload, userId, sha1);
+        return upload;
+    }
+
+    /** Returns the digest of the first part (a prefix of the target), or null if it has none. */
+    private ResumableSha1 assemble(List<V2TusUpload> parts, Path target) throws IOException {
+        V2TusUpload first = parts.getFirst();
+        Files.createDirectories(target.getParent());
+
+        ResumableSha1 sha1 = ResumableSha1.restore(first.getChecksumState());
+        if (sha1 != null && sha1.length() != first.getUploadLength()) sha1 = null;
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (V2TusUpload part : parts) {
+                try (FileChannel in = FileChannel.open(Path.of(part.getTempPath()), StandardOpenOption.READ)) {
+                    long size = part.getUploadLength();
+                    long copied = 0;
+                    while (copied < size) {
+                        long n = in.transferTo(copied, size - copied, out);
+                        if (n <= 0) throw new IOException("Partial upload " + part.getTusId() + " is shorter than its length");
+                        copied += n;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        return sha1;
+    }
+
+    private List<V2TusUpload> loadParts(List<String> partIds, String userId) {
+        if (partIds.stream().distinct().count() != partIds.size()) {
+            throw new UploadException(HttpStatus.BAD_REQUEST, "Upload-Concat names a partial upload twice");
+        }
+        List<V2TusUpload> parts = new ArrayList<>(partIds.size());
+        for (String partId : partIds) {
+            V2TusUpload part = repo.findByTusId(partId)
+                    .orElseThrow(() -> new UploadException(HttpStatus.BAD_REQUEST, "Partial upload not found: " + partId));
+            if (!userId.equals(part.getUserId())) {
+                throw new UploadException(HttpStatus.FORBIDDEN, "Partial upload belongs to another user: " + partId);
+            }
+            if (part.getConcatType() != V2TusUpload.ConcatType.PARTIAL) {
+                throw new UploadException(HttpStatus.BAD_REQUEST, "Upload is not a partial upload: " + partId);
+            }
+            if (part.getStatus() != V2TusUpload.Status.COMPLETED) {
+                throw new UploadException(HttpStatus.BAD_REQUEST, "Partial upload is not complete: " + partId);
+            }
+            if (part.getFinalPath() != null) {
+                throw new UploadException(HttpStatus.CONFLICT, "Partial upload is already used: " + partId);
+            }
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    /** "final;/api/v1/files/a https://host/api/v1/files/b" -> [a, b] */
+    static List<String> parseFinalParts(String uploadConcat) {
+        String urls = uploadConcat.substring("final;".length()).trim();
+        if (urls.isEmpty()) {
+            throw new UploadException(HttpStatus.BAD_REQUEST, "Upload-Concat final without partial uploads");
+        }
+        return Arrays.stream(urls.split("\\s+"))
+                .map(url -> url.endsWith("/") ? url.substring(0, url.length() - 1) : url)
+                .map(url -> url.substring(url.lastIndexOf('/') + 1))
+                .toList();
+    }
+}
@@ -0,0 +1,98 @@
+package com.tus.upload.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Runs upload finalization (asset insert, quota, exif, file move, job pushes) off the
+ * request thread on the virtual-thread executor. At most max-concurrent finalizations
+ * run at once, so a burst of completing uploads cannot exhaust the DB pool; failures are
+ * retried with exponential backoff.
+ */
+@Component
+@Slf4j
+public class TusFinalizer {
+
+    private final Executor taskExecutor;
+    private final Semaphore permits;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+
+    public TusFinalizer(@Qualifier("taskExecutor") Executor taskExecutor,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.tus.completion.max-concurrent:64}") int maxConcurrent,
+                        @Value("${app.tus.completion.max-attempts:5}") int maxAttempts,
+                        @Value("${app.tus.completion.retry-backoff:2s}") Duration retryBackoff) {
+        this.taskExecutor = taskExecutor;
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+
+        Gauge.builder("upload.completions.active", permits, p -> maxConcurrent - p.availablePermits())
+                .description("tus finalizations running right now")
+                .tag("protocol", UploadMetrics.TUS)
+                .register(meterRegistry);
+        Gauge.builder("upload.completions.waiting", permits, Semaphore::getQueueLength)
+                .description("tus finalizations waiting for a permit")
+                .tag("protocol", UploadMetrics.TUS)
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@code onGiveUp} runs with the last error once all attempts failed, {@code onAbandon}
+     * when the thread was interrupted and the completion sweep has to finish the job.
+     */
+    public void submit(String tusId, Callable<?> finalization, Consumer<Exception> onGiveUp, Runnable onAbandon) {
+        taskExecutor.execute(() -> run(tusId, finalization, onGiveUp, onAbandon));
+    }
+
+    private void run(String tusId, Callable<?> finalization, Consumer<Exception> onGiveUp, Runnable onAbandon) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                permits.acquire();
+                try {
+                    finalization.call();
+                    return;
+                } finally {
+                    permits.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Finalization of tusId={} interrupted, the completion sweep will pick it up", tusId);
+                onAbandon.run();
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    log.error("Finalization of tusId={} failed after {} attempts", tusId, attempt, e);
+                    onGiveUp.accept(e);
+                    return;
+                }
+                log.warn("Finalization of tusId={} failed (attempt {}/{}): {}", tusId, attempt, maxAttempts, e.getMessage());
+                if (!sleep(retryBackoff.multipliedBy(1L << (attempt - 1)))) {
+                    onAbandon.run();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean sleep(Duration backoff) {
+        try {
+            Thread.sleep(backoff);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.tus.upload.service;
+
+import com.tus.upload.entity.V2TusUpload;
+import com.tus.upload.repo.TusLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This node's leases on tus uploads (see TusLeaseRepository). A lease lives for
+ * app.tus.lease.ttl and is renewed by a heartbeat while held, so it only lapses when the
+ * holder dies; another node can then take over once it expired.
+ */
+@Component
+@Slf4j
+public class TusLeases {
+
+    private final TusLeaseRepository leases;
+    private final Duration ttl;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    public TusLeases(TusLeaseRepository leases,
+                     @Value("${app.tus.lease.ttl:30s}") Duration ttl) {
+        this.leases = leases;
+        this.ttl = ttl;
+    }
+
+    /** Write lease for a PATCH starting at {@code offset}; false if taken or the offset moved. */
+    public boolean claimWrite(String tusId, long offset) {
+        if (!leases.claimWrite(tusId, offset, nodeId, Instant.now().plus(ttl), Instant.now())) return false;
+        held.add(tusId);
+        return true;
+    }
+
+    /** Offset compare-and-set of the write-lease holder, releases the lease. */
+    public boolean advance(V2TusUpload u, long expectedOffset) {
+        held.remove(u.getTusId());
+        return leases.advance(u.getTusId(), nodeId, expectedOffset, u.getUploadOffset(), u.getStatus().name(),
+                u.getChecksumState(), u.getUpdatedAt());
+    }
+
+    /**
+     * Completion lease for this node's finalizer; the heartbeat keeps it alive for as long
+     * as the finalization runs, so the completion sweep only takes over after a crash.
+     */
+    public boolean holdCompletion(String tusId) {
+        if (!leases.claimCompletion(tusId, nodeId, Instant.now().plus(ttl), Instant.now())) return false;
+        held.add(tusId);
+        return true;
+    }
+
+    /** COMPLETING uploads whose finalizer died, now leased to this node. */
+    public List<String> claimAbandonedCompletions(int limit) {
+        List<String> tusIds = leases.claimAbandonedCompletions(nodeId, Instant.now().plus(ttl), Instant.now(), limit);
+        held.addAll(tusIds);
+        return tusIds;
+    }
+
+    /** Stops renewing a lease the DB already cleared (a committed completion does that). */
+    public void forget(String tusId) {
+        held.remove(tusId);
+    }
+
+    public void release(String tusId) {
+        held.remove(tusId);
+        try {
+            leases.release(tusId, nodeId);
+        } catch (DataAccessException e) {
+            // Expires on its own once the heartbeat stops covering it
+            log.warn("Failed to release lease on tus upload {}: {}", tusId, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.tus.lease.renew-interval-ms:10000}")
+    public void renew() {
+        if (held.isEmpty()) return;
+        List<String> tusIds = List.copyOf(held);
+        int renewed = leases.renew(tusIds, nodeId, Instant.now().plus(ttl));
+        if (renewed < tusIds.size()) {
+            log.debug("Renewed {} of {} tus upload leases (others finished meanwhile)", renewed, tusIds.size());
+        }
+    }
+}
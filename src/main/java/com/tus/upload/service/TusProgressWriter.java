@@ -0,0 +1,277 @@
+package com.tus.upload.service;
+
+import com.tus.upload.entity.V2TusUpload;
+import com.tus.upload.repo.TusUploadRepository;
+import com.tus.upload.util.ResumableSha1;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists tus upload progress (offset, status, checksum state).
+ *
+ * write-through: a PATCH takes the upload's write lease before writing (see claim) and
+ *                saves the row when done. Safe with any number of nodes.
+ * write-behind:  PATCHes only update the session cache and a pending map; a scheduled
+ *                flush writes the latest state of every dirty upload in one JDBC batch.
+ *                The offset lives in this node's memory, so this mode is single-node only
+ *                and must be acknowledged with app.tus.offset-persistence.single-node=true.
+ *
+ * In write-behind mode the temp files are reconciled against the table on startup, before
+ * any request is served, so bytes that reached disk before a crash (and after the last
+ * flush) are not lost.
+ */
+@Component
+@Slf4j
+public class TusProgressWriter implements SmartInitializingSingleton {
+
+    public enum Mode { WRITE_THROUGH, WRITE_BEHIND }
+
+    // Never move an offset backwards, never resurrect a finished upload
+    private static final String FLUSH_SQL = """
+            UPDATE v2_tus_uploads
+               SET upload_offset = ?, status = ?, checksum_state = ?, updated_at = ?
+             WHERE tus_id = ?
+               AND upload_offset <= ?
+               AND status IN ('PENDING', 'IN_PROGRESS')
+            """;
+
+    static final Set<V2TusUpload.Status> WRITABLE = EnumSet.of(V2TusUpload.Status.PENDING, V2TusUpload.Status.IN_PROGRESS);
+
+    private final TusUploadRepository repo;
+    private final TusSessionCache sessionCache;
+    private final TusLeases leases;
+    private final JdbcTemplate jdbcTemplate;
+    private final Mode mode;
+    private final int batchSize;
+
+    private final ConcurrentHashMap<String, Progress> pending = new ConcurrentHashMap<>();
+
+    private record Progress(String tusId, long offset, V2TusUpload.Status status, byte[] checksumState, Instant at) {}
+
+    public TusProgressWriter(TusUploadRepository repo,
+                             TusSessionCache sessionCache,
+                             TusLeases leases,
+                             JdbcTemplate jdbcTemplate,
+                             @Value("${app.tus.offset-persistence.mode:write-through}") Mode mode,
+                             @Value("${app.tus.offset-persistence.single-node:false}") boolean singleNode,
+                             @Value("${app.tus.offset-persistence.batch-size:500}") int batchSize) {
+        if (mode == Mode.WRITE_BEHIND && !singleNode) {
+            throw new IllegalStateException("app.tus.offset-persistence.mode=write-behind keeps offsets in one node's memory; "
+                    + "set app.tus.offset-persistence.single-node=true if exactly one instance serves tus, otherwise use write-through");
+        }
+        this.repo = repo;
+        this.sessionCache = sessionCache;
+        this.leases = leases;
+        this.jdbcTemplate = jdbcTemplate;
+        this.mode = mode;
+        this.batchSize = batchSize;
+    }
+
+    public boolean isWriteBehind() {
+        return mode == Mode.WRITE_BEHIND;
+    }
+
+    /**
+     * Must succeed before a PATCH writes its first byte at {@code offset}: the write lease
+     * makes this node the only writer of the temp file, so a racing PATCH on another node is
+     * refused (409) before it can overwrite anything. Write-behind is single-node, where the
+     * per-upload write guard in TusService already is that claim.
+     */
+    public boolean claim(String tusId, long offset) {
+        return isWriteBehind() || leases.claimWrite(tusId, offset);
+    }
+
+    /** Gives the write lease back after a failed PATCH. */
+    public void release(String tusId) {
+        if (!isWriteBehind()) leases.release(tusId);
+    }
+
+    /**
+     * Moves the upload from {@code expectedOffset} to the in-memory progress of {@code u}.
+     * Returns false if another writer got there first; the session cache must be updated
+     * by the caller.
+     * <p>
+     * write-through does this as a single conditional UPDATE by the write-lease holder,
+     * which also ends the lease. write-behind compares against this node's pending state.
+     */
+    public boolean advance(V2TusUpload u, long expectedOffset) {
+        if (!isWriteBehind()) {
+            return leases.advance(u, expectedOffset);
+        }
+        Progress next = new Progress(u.getTusId(), u.getUploadOffset(), u.getStatus(), u.getChecksumState(), u.getUpdatedAt());
+        boolean[] advanced = {true};
+        pending.compute(u.getTusId(), (tusId, prev) -> {
+            if (prev != null && prev.offset() != expectedOffset) {
+                advanced[0] = false;
+                return prev;
+            }
+            return next;
+        });
+        return advanced[0];
+    }
+
+    /** DB lookup with any unflushed progress applied on top; used as the session cache loader. */
+    public Optional<V2TusUpload> load(String tusId) {
+        Optional<V2TusUpload> row = repo.findByTusId(tusId);
+        Progress p = pending.get(tusId);
+        if (p != null) {
+            row.filter(u -> p.offset() > u.getUploadOffset()).ifPresent(u -> {
+                u.setUploadOffset(p.offset());
+                u.setStatus(p.status());
+                u.setChecksumState(p.checksumState());
+            });
+        }
+        return row;
+    }
+
+    /** Drops unflushed progress, e.g. when the upload was completed or terminated. */
+    public void discard(String tusId) {
+        pending.remove(tusId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.tus.offset-persistence.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) return;
+
+        List<Progress> batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+        for (Progress p : pending.values()) {
+            batch.add(p);
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) write(batch);
+    }
+
+    /**
+     * Entries stay in {@code pending} until their UPDATE committed, so load() never sees the
+     * older row in between. Afterwards only the exact flushed entry is removed; a newer PATCH
+     * that replaced it in the meantime stays for the next flush.
+     */
+    private void write(List<Progress> batch) {
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch, batch.size(), (ps, p) -> {
+                ps.setLong(1, p.offset());
+                ps.setString(2, p.status().name());
+                ps.setBytes(3, p.checksumState());
+                ps.setTimestamp(4, Timestamp.from(p.at()));
+                ps.setString(5, p.tusId());
+                ps.setLong(6, p.offset());
+            });
+            batch.forEach(p -> pending.remove(p.tusId(), p));
+            log.debug("Flushed progress for {} tus uploads", batch.size());
+        } catch (DataAccessException e) {
+            log.error("Failed to flush progress for {} tus uploads, will retry: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Runs once all beans exist but before the web server and the schedulers start, so no
+     * PATCH on this node can be writing a temp file while it is measured.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (isWriteBehind()) reconcile();
+    }
+
+    /**
+     * Rebuilds the true offset of unfinished uploads from their temp file length.
+     * Data on disk beyond the persisted offset was written by a PATCH whose progress
+     * was never flushed; the resumable checksum is extended over that gap so completion
+     * still does not need a full re-hash.
+     * <p>
+     * Only for write-behind, which runs on a single node (see advance): every unfinished
+     * upload was then written by this node, and nothing else touches the temp files.
+     * With write-through the persisted offset is already exact, and bytes past it belong
+     * to a PATCH that was never acknowledged (or to a live PATCH on another node).
+     */
+    void reconcile() {
+        int reconciled = 0;
+        PageRequest page = PageRequest.of(0, batchSize, Sort.by("id"));
+        Slice<V2TusUpload> slice;
+        do {
+            slice = repo.findByStatusIn(WRITABLE, page);
+            for (V2TusUpload u : slice) {
+                try {
+                    if (reconcile(u)) reconciled++;
+                } catch (IOException e) {
+                    log.warn("Could not reconcile tus upload {}: {}", u.getTusId(), e.getMessage());
+                }
+            }
+            page = page.next();
+        } while (slice.hasNext());
+
+        if (reconciled > 0) {
+            log.info("Reconciled offsets of {} tus uploads from temp files", reconciled);
+        }
+    }
+
+    private boolean reconcile(V2TusUpload u) throws IOException {
+        Path temp = Path.of(u.getTempPath());
+        if (!Files.exists(temp)) return false;
+
+        long onDisk = Math.min(Files.size(temp), u.getUploadLength());
+        if (onDisk <= u.getUploadOffset()) return false;
+
+        long persisted = u.getUploadOffset();
+        u.setChecksumState(extendChecksum(u, temp, persisted, onDisk));
+        u.setUploadOffset(onDisk);
+        u.setStatus(V2TusUpload.Status.IN_PROGRESS);
+        repo.save(u);
+        sessionCache.evict(u.getTusId());
+        log.info("Recovered tus upload {}: offset {} -> {}", u.getTusId(), persisted, onDisk);
+        return true;
+    }
+
+    private byte[] extendChecksum(V2TusUpload u, Path temp, long from, long to) throws IOException {
+        ResumableSha1 sha1 = from == 0 && u.getChecksumState() == null
+                ? new ResumableSha1()
+                : ResumableSha1.restore(u.getChecksumState());
+        if (sha1 == null || sha1.length() != from) {
+            return null; // completion re-hashes the whole file
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(128 * 1024);
+            long position = from;
+            while (position < to) {
+                buf.clear().limit((int) Math.min(buf.capacity(), to - position));
+                int read = channel.read(buf, position);
+                if (read < 0) break;
+                buf.flip();
+                sha1.update(buf);
+                position += read;
+            }
+        }
+        return sha1.exportState();
+    }
+}
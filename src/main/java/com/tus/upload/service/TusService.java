@@ -1,22 +1,29 @@
 package com.tus.upload.service;
 
 import com.tus.upload.entity.V2TusUpload;
-import com.tus.upload.repo.AssetExifNativeRepository;
+import com.tus.upload.entity.dto.QueuedJob;
+import com.tus.upload.exception.UploadException;
 import com.tus.upload.repo.AssetRepository;
+import com.tus.upload.repo.ContentBlobNativeRepository;
 import com.tus.upload.repo.TusUploadRepository;
-import com.tus.upload.repo.UserRepository;
 import com.tus.upload.common.entity.Asset;
-import com.tus.upload.common.entity.AssetExif;
-import com.tus.upload.common.entity.User;
 import com.tus.upload.common.enums.AssetType;
 import com.tus.upload.common.enums.AssetVisibility;
 import com.tus.upload.common.utils.TusAppUtils;
+import com.tus.upload.service.append.AppendEngine;
+import com.tus.upload.service.append.ByteObserver;
+import com.tus.upload.service.append.HeapAppendEngine;
+import com.tus.upload.service.append.UploadChecksumVerifier;
+import com.tus.upload.util.BoundedInputStream;
+import com.tus.upload.util.ResumableSha1;
+import com.tus.upload.util.UuidV7;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,15 +33,21 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TusService {
 
+    // Used when a PATCH carries Upload-Checksum but the configured engine cannot observe bytes
+    private static final AppendEngine OBSERVING_FALLBACK = new HeapAppendEngine();
+
     private final TusUploadRepository repo;
 
     @Value("${app.storage.temp-dir}")
@@ -43,158 +56,523 @@ public class TusService {
     @Value("${app.storage.final-dir}")
     private String finalDir;
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final UserRepository userRepository;
+    @Value("${app.expiration.tus-ttl:24h}")
+    private Duration uploadTtl;
+
+    @Value("${app.tus.completion.async:true}")
+    private boolean asyncCompletion;
+
+    private final QuotaService quotaService;
     private final AssetRepository assetRepository;
-    private final AssetExifNativeRepository assetExifRepository;
+    private final TusSessionCache sessionCache;
+    private final TusProgressWriter progressWriter;
+    private final TusFinalizer finalizer;
+    private final TusLeases leases;
+    private final CompletionWriter completionWriter;
+    private final AppendEngine appendEngine;
+    private final ContentBlobStore blobStore;
+    private final ContentBlobNativeRepository contentBlobRepository;
+    private final UploadMetrics metrics;
+
+    // tusIds with a PATCH in flight on this node
+    private final Set<String> writing = ConcurrentHashMap.newKeySet();
 
-    @Transactional
-    public String create(HttpServletRequest req) throws Exception {
+    /**
+     * Creates a tus upload. Not transactional: with creation-with-upload the body is
+     * streamed here, and the single INSERT happens only once the bytes are on disk.
+     */
+    public V2TusUpload create(HttpServletRequest req) throws Exception {
         Long length = Long.parseLong(req.getHeader("Upload-Length"));
         String metadata = req.getHeader("Upload-Metadata");
         Map<String, String> headerData = parseUploadMetadata(metadata);
 
         V2TusUpload upload = new V2TusUpload();
-        upload.setTusId(UUID.randomUUID().toString());
+        upload.setTusId(UuidV7.randomUUID().toString()); // also the asset id
         upload.setUploadLength(length);
         upload.setMetadata(metadata);
         upload.setFilename(headerData.get("filename"));
         upload.setFiletype(headerData.get("filetype"));
+        if ("partial".equals(req.getHeader("Upload-Concat"))) {
+            upload.setConcatType(V2TusUpload.ConcatType.PARTIAL);
+        }
 
+        // Client already told us the checksum and this user has that file: done, no bytes needed
+        byte[] contentChecksum = parseContentChecksum(headerData.get("checksum"));
+        String userId = req.getHeader("X-User-Id");
+        if (contentChecksum != null && userId != null && upload.getConcatType() == null) {
+            Optional<UUID> existing = findExistingAssets(userId, List.of(contentChecksum)).values().stream().findFirst();
+            if (existing.isPresent()) {
+                upload.setUploadOffset(length);
+                upload.setAssetId(existing.get());
+                upload.setStatus(V2TusUpload.Status.COMPLETED);
+                repo.save(upload);
+                log.info("tus upload id={} matches existing asset {} of user {}, skipping transfer", upload.getTusId(), existing.get(), userId);
+                return upload;
+            }
+        }
+
+        // Refuse over-quota uploads (413) before any bytes are sent
+        upload.setUserId(userId);
+        if (userId != null) {
+            quotaService.reserve(TusAppUtils.parseUUID(userId), upload.getTusId(), length);
+        }
+        try {
+            return createWithReservation(req, upload, userId);
+        } catch (Exception e) {
+            quotaService.release(userId, upload.getTusId());
+            throw e;
+        }
+    }
+
+    private V2TusUpload createWithReservation(HttpServletRequest req, V2TusUpload upload, String userId) throws Exception {
         Path temp = Path.of(tempDir, upload.getTusId() + ".bin");
         Files.createDirectories(temp.getParent());
-        Files.write(temp, new byte[0], StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         upload.setTempPath(temp.toString());
+
+        if (!hasCreationBody(req)) {
+            Files.write(temp, new byte[0], StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            repo.save(upload);
+            sessionCache.put(upload); // first PATCH follows right away
+            return upload;
+        }
+
+        // creation-with-upload: small files arrive whole with the POST, saving the PATCH round trip
+        UploadChecksumVerifier verifier = UploadChecksumVerifier.parse(req.getHeader("Upload-Checksum"));
+        ResumableSha1 sha1;
+        try (InputStream body = req.getInputStream()) {
+            sha1 = writeBody(upload, body, verifier, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (Exception e) {
+            // No row exists yet, so the client simply retries the creation
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        upload.setStatus(V2TusUpload.Status.IN_PROGRESS);
         repo.save(upload);
-        return upload.getTusId();
+        log.info("Created tus upload id={} with {} of {} bytes in the request", upload.getTusId(), upload.getUploadOffset(), upload.getUploadLength());
+
+        afterWrite(upload, userId, sha1);
+        return upload;
+    }
+
+    /**
+     * Maps the given checksums (as lowercase hex) to the id of the user's asset with that
+     * content; checksums the user has no asset for are absent.
+     */
+    public Map<String, UUID> findExistingAssets(String userId, Collection<byte[]> checksums) {
+        UUID ownerId = TusAppUtils.parseUUID(userId);
+        Map<String, UUID> existing = new HashMap<>();
+        for (AssetRepository.OwnedChecksum match : assetRepository.findByOwnerAndChecksumIn(ownerId, checksums)) {
+            existing.put(HexFormat.of().formatHex(match.getChecksum()), match.getId());
+        }
+        return existing;
+    }
+
+    /** Metadata/probe checksum: SHA-1 (what assets store) as hex or base64; null when absent. */
+    public static byte[] parseContentChecksum(String value) {
+        if (value == null || value.isBlank()) return null;
+        String v = value.trim();
+        try {
+            byte[] sha1 = v.length() == 40 ? HexFormat.of().parseHex(v) : Base64.getDecoder().decode(v);
+            if (sha1.length == 20) return sha1;
+        } catch (IllegalArgumentException ignored) {
+            // fall through
+        }
+        throw new UploadException(HttpStatus.BAD_REQUEST, "checksum must be a SHA-1 digest (hex or base64): " + value);
+    }
+
+    private static boolean hasCreationBody(HttpServletRequest req) {
+        return req.getContentType() != null
+                && req.getContentType().startsWith("application/offset+octet-stream")
+                && req.getContentLengthLong() != 0;
     }
 
     /**
      * Appends data to the temp file.
      * This method is NOT transactional to avoid holding locks during file I/O.
+     * Concurrent PATCHes for one upload are rejected with 409: immediately by the
+     * per-node write guard, and across nodes by the write lease taken before any byte
+     * is written (see TusProgressWriter.claim).
+     * With {@code uploadChecksum} set, a body that does not match is discarded (460).
      */
-    public V2TusUpload append(String tusId, long clientOffset, InputStream body, String userId) throws Exception {
-        V2TusUpload tusUploadRecord = repo.findByTusId(tusId).orElseThrow(() -> new IllegalStateException("Upload not found: " + tusId));
+    public V2TusUpload append(String tusId, long clientOffset, InputStream body, String userId, String uploadChecksum) throws Exception {
+        UploadChecksumVerifier verifier = UploadChecksumVerifier.parse(uploadChecksum);
+        if (!writing.add(tusId)) {
+            throw new UploadException(HttpStatus.CONFLICT, "Upload " + tusId + " is already being written");
+        }
+        try {
+            return appendGuarded(tusId, clientOffset, body, userId, verifier);
+        } finally {
+            writing.remove(tusId);
+        }
+    }
+
+    private V2TusUpload appendGuarded(String tusId, long clientOffset, InputStream body, String userId,
+                                      UploadChecksumVerifier verifier) throws Exception {
+        V2TusUpload tusUploadRecord = sessionCache.find(tusId, progressWriter::load).orElseThrow(() -> new IllegalStateException("Upload not found: " + tusId));
+        if (tusUploadRecord.getStatus() == V2TusUpload.Status.EXPIRED || tusUploadRecord.getStatus() == V2TusUpload.Status.CANCELLED) {
+            throw new UploadException(HttpStatus.GONE, "Upload " + tusId + " is " + tusUploadRecord.getStatus());
+        }
+        if (tusUploadRecord.getConcatType() == V2TusUpload.ConcatType.FINAL) {
+            throw new UploadException(HttpStatus.FORBIDDEN, "PATCH is not allowed on a final concatenated upload");
+        }
+        if ((tusUploadRecord.getStatus() == V2TusUpload.Status.COMPLETING || tusUploadRecord.getStatus() == V2TusUpload.Status.COMPLETED)
+                && tusUploadRecord.getUploadLength() == clientOffset) {
+            return tusUploadRecord; // retried final PATCH whose response got lost
+        }
         if (!Objects.equals(tusUploadRecord.getUploadOffset(), clientOffset)) {
-            throw new IllegalStateException("Offset mismatch");
-        }
-
-        Path temp = Path.of(tusUploadRecord.getTempPath());
-        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
-            channel.position(tusUploadRecord.getUploadOffset());
-            byte[] buf = new byte[128 * 1024];
-            int read;
-            long written = 0;
-            while ((read = body.read(buf)) != -1) {
-                channel.write(ByteBuffer.wrap(buf, 0, read));
-                written += read;
-            }
-            tusUploadRecord.setUploadOffset(tusUploadRecord.getUploadOffset() + written); // Update in-memory object
+            throw new UploadException(HttpStatus.CONFLICT, "Offset mismatch");
         }
 
-        if (tusUploadRecord.getUploadOffset().equals(tusUploadRecord.getUploadLength())) {
-            Path tempFile = Path.of(tusUploadRecord.getTempPath());
-            byte[] checksumBytes = TusAppUtils.calculateChecksum(tempFile.toFile());
-            log.info("Upload complete for tusId={}, calculated checksum={}", tusId, TusAppUtils.bytesToHex(checksumBytes));
-            // (DB-in) Run all DB logic in a single, fast transaction
-            Asset asset = processCompletedUpload(tusUploadRecord, userId, checksumBytes);
+        if (!progressWriter.claim(tusId, clientOffset)) {
+            // Another node is writing this upload, or our cached offset was outdated
+            sessionCache.evict(tusId);
+            throw new UploadException(HttpStatus.CONFLICT, "Upload " + tusId + " is being written elsewhere or its offset moved");
+        }
 
-            // Queue async jobs (Outside transaction)
-            queueAsyncJobs(asset);
-        } else {
-            updateUploadProgress(tusUploadRecord);
+        ResumableSha1 sha1;
+        try {
+            sha1 = writeBody(tusUploadRecord, body, verifier, StandardOpenOption.WRITE);
+        } catch (Exception e) {
+            progressWriter.release(tusId);
+            throw e;
         }
 
+        tusUploadRecord.setStatus(V2TusUpload.Status.IN_PROGRESS);
+        tusUploadRecord.setUpdatedAt(Instant.now()); // also pushes out Upload-Expires
+        if (!progressWriter.advance(tusUploadRecord, clientOffset)) {
+            // Our lease lapsed (e.g. a long DB outage) and someone else moved on
+            progressWriter.release(tusId);
+            sessionCache.evict(tusId);
+            throw new UploadException(HttpStatus.CONFLICT, "Offset changed concurrently");
+        }
+
+        afterWrite(tusUploadRecord, userId, sha1);
         return tusUploadRecord;
     }
 
-    @Transactional
-    protected void updateUploadProgress(V2TusUpload u) {
-        u.setStatus(V2TusUpload.Status.IN_PROGRESS);
+    /**
+     * Streams {@code body} into the temp file at the upload's current offset and moves the
+     * in-memory offset and digest state forward. Returns the running digest, or null when
+     * it is not tracked (completion then re-hashes the file).
+     * A body longer than the rest of the upload is refused with 413 and nothing is kept.
+     */
+    private ResumableSha1 writeBody(V2TusUpload u, InputStream body, UploadChecksumVerifier verifier,
+                                    OpenOption... openOptions) throws IOException {
+        long offset = u.getUploadOffset();
+        AppendEngine engine = verifier != null && !appendEngine.observesBytes() ? OBSERVING_FALLBACK : appendEngine;
+
+        // Hash the bytes as they stream through so completion never re-reads the file
+        ResumableSha1 sha1 = engine.observesBytes() ? restoreChecksum(u) : null;
+
+        long remaining = u.getUploadLength() - offset;
+        BoundedInputStream bounded = new BoundedInputStream(body, remaining);
+
+        metrics.writeStarted(UploadMetrics.TUS);
+        try (FileChannel channel = FileChannel.open(Path.of(u.getTempPath()), openOptions)) {
+            ByteObserver observer = sha1 != null ? sha1::update : ByteObserver.NONE;
+            if (verifier != null) observer = verifier.andThen(observer);
+
+            long start = System.nanoTime();
+            long written = engine.append(bounded, channel, offset, observer);
+            metrics.written(UploadMetrics.TUS, u.getFiletype(), written, System.nanoTime() - start);
+            if (bounded.remaining() == 0 && body.read() >= 0) {
+                // Never write past Upload-Length; the saved digest state is left untouched
+                channel.truncate(offset);
+                throw new UploadException(HttpStatus.PAYLOAD_TOO_LARGE,
+                        "Body exceeds the " + remaining + " bytes left of Upload-Length");
+            }
+            if (verifier != null && !verifier.matches()) {
+                // Roll back to the last good offset; the saved digest state is left untouched
+                channel.truncate(offset);
+                throw new UploadException(460, "Checksum mismatch");
+            }
+            u.setUploadOffset(offset + written); // Update in-memory object
+            u.setChecksumState(sha1 != null ? sha1.exportState() : null);
+        } finally {
+            metrics.writeFinished(UploadMetrics.TUS);
+        }
+        return sha1;
+    }
+
+    private void afterWrite(V2TusUpload u, String userId, ResumableSha1 sha1) throws Exception {
+        if (!u.getUploadOffset().equals(u.getUploadLength())) {
+            sessionCache.put(u);
+        } else if (u.getConcatType() == V2TusUpload.ConcatType.PARTIAL) {
+            // Partial uploads only become an asset through a final concatenation
+            u.setStatus(V2TusUpload.Status.COMPLETED);
+            repo.save(u);
+            progressWriter.discard(u.getTusId());
+            sessionCache.evict(u.getTusId());
+        } else if (asyncCompletion) {
+            beginCompletion(u, userId, sha1);
+        } else {
+            completeUpload(u, userId, sha1);
+        }
+    }
+
+    /**
+     * Completes a final upload assembled by TusConcatenationService the same way as an upload
+     * whose last PATCH arrived. {@code sha1} may cover only a prefix of the file (the first
+     * part); the completion hashes the rest. With synchronous completion a failure marks the
+     * upload FAILED and releases its parts right here.
+     */
+    public void completeConcatenated(V2TusUpload u, String userId, ResumableSha1 sha1) throws Exception {
+        if (asyncCompletion) {
+            beginCompletion(u, userId, sha1);
+            return;
+        }
+        try {
+            completeUpload(u, userId, sha1);
+        } catch (Exception e) {
+            log.error("Completion of final upload {} failed, releasing its parts", u.getTusId(), e);
+            u.setStatus(V2TusUpload.Status.FAILED);
+            repo.save(u);
+            abandonParts(u);
+            deleteTempFile(u);
+            throw e;
+        }
+    }
+
+    /**
+     * Acknowledges the last byte right away: the upload is durably COMPLETING and the
+     * asset is created by the TusFinalizer in the background. Clients HEAD for the result
+     * (X-Upload-Status, X-Asset-Id). The completion lease is taken first, so the completion
+     * sweep leaves the upload alone for as long as this node's finalizer is alive.
+     */
+    private void beginCompletion(V2TusUpload u, String userId, ResumableSha1 sha1) {
+        boolean leased = leases.holdCompletion(u.getTusId());
+        u.setStatus(V2TusUpload.Status.COMPLETING);
+        u.setUserId(userId);
         repo.save(u);
+        progressWriter.discard(u.getTusId());
+        sessionCache.put(u);
+        if (leased) {
+            submitCompletion(u.getTusId(), sha1);
+        } else {
+            log.warn("tusId={} is leased by another node, leaving its completion to the sweep", u.getTusId());
+        }
+    }
+
+    /** Runs under this node's completion lease; a committed completion clears it in the DB. */
+    private void submitCompletion(String tusId, ResumableSha1 sha1) {
+        finalizer.submit(tusId, () -> {
+            Asset asset = finishCompletion(tusId, sha1);
+            leases.forget(tusId);
+            return asset;
+        }, e -> failCompletion(tusId), () -> leases.release(tusId));
+    }
+
+    private Asset finishCompletion(String tusId, ResumableSha1 sha1) throws Exception {
+        V2TusUpload u = repo.findByTusId(tusId).orElseThrow(() -> new IllegalStateException("Upload not found: " + tusId));
+        if (u.getStatus() != V2TusUpload.Status.COMPLETING) {
+            return null; // finished by an earlier attempt
+        }
+        UUID assetId = TusAppUtils.parseUUID(tusId);
+        if (!Files.exists(Path.of(u.getTempPath())) && assetRepository.existsById(assetId)) {
+            // An earlier attempt got past the file move, only the final status is missing
+            u.setAssetId(assetId);
+            u.setStatus(V2TusUpload.Status.COMPLETED);
+            repo.save(u);
+            sessionCache.evict(tusId);
+            consumeParts(u);
+            return null;
+        }
+        return completeUpload(u, u.getUserId(), sha1 != null ? sha1 : restoreChecksum(u));
+    }
+
+    private void failCompletion(String tusId) {
+        repo.findByTusId(tusId)
+                .filter(u -> u.getStatus() == V2TusUpload.Status.COMPLETING)
+                .ifPresent(u -> {
+                    u.setStatus(V2TusUpload.Status.FAILED);
+                    repo.save(u);
+                    quotaService.release(u.getUserId(), tusId);
+                    abandonParts(u);
+                    deleteTempFile(u);
+                });
+        leases.release(tusId);
+        sessionCache.evict(tusId);
+    }
+
+    /**
+     * Resumes completions left behind by a node that died (or gave up the thread) mid-way:
+     * COMPLETING uploads whose lease is no longer renewed. Claiming the lease makes sure
+     * only one node picks each upload up.
+     */
+    @Scheduled(fixedDelayString = "${app.tus.completion.sweep-interval-ms:60000}", initialDelayString = "${app.tus.completion.sweep-initial-delay-ms:30000}")
+    public void resumeStuckCompletions() {
+        if (!asyncCompletion) return;
+        for (String tusId : leases.claimAbandonedCompletions(100)) {
+            log.info("Resuming completion of tusId={} (its finalizer's lease lapsed)", tusId);
+            submitCompletion(tusId, null);
+        }
+    }
+
+    /**
+     * Turns an upload whose bytes are all in its temp file into an asset.
+     * {@code sha1} is the digest carried along the writes, or null to re-hash the file.
+     */
+    public Asset completeUpload(V2TusUpload u, String userId, ResumableSha1 sha1) throws Exception {
+        long checksumStart = System.nanoTime();
+        byte[] checksumBytes = completedChecksum(u, sha1);
+        metrics.checksum(UploadMetrics.TUS, u.getFiletype(), System.nanoTime() - checksumStart);
+        log.info("Upload complete for tusId={}, calculated checksum={}", u.getTusId(), TusAppUtils.bytesToHex(checksumBytes));
+        // (DB-in) Group-committed with concurrent completions, see CompletionWriter
+        Asset asset = processCompletedUpload(u, userId, checksumBytes);
+        progressWriter.discard(u.getTusId());
+        sessionCache.evict(u.getTusId());
+        // Charged on the user row in that transaction, so the reservation is no longer needed
+        quotaService.release(userId, u.getTusId());
+        consumeParts(u);
+
+        // Follow-up jobs were committed to the outbox with the asset; JobOutboxRelay publishes them
+        return asset;
+    }
+
+    /**
+     * Resumes the digest saved by the previous PATCH.
+     * Returns null when the saved state is missing or does not line up with the
+     * current offset; completion then falls back to a full re-hash.
+     */
+    private ResumableSha1 restoreChecksum(V2TusUpload u) {
+        if (u.getChecksumState() == null) {
+            return u.getUploadOffset() == 0 ? new ResumableSha1() : null;
+        }
+        ResumableSha1 sha1 = ResumableSha1.restore(u.getChecksumState());
+        if (sha1 == null || sha1.length() != u.getUploadOffset()) {
+            log.warn("Discarding stale checksum state for tusId={} (offset={})", u.getTusId(), u.getUploadOffset());
+            return null;
+        }
+        return sha1;
+    }
+
+    private byte[] completedChecksum(V2TusUpload u, ResumableSha1 sha1) throws Exception {
+        if (sha1 != null && sha1.length() == u.getUploadLength()) {
+            return sha1.digest();
+        }
+        if (sha1 != null && sha1.length() < u.getUploadLength()) {
+            // Digest of a prefix (first part of a concatenated upload): hash only the rest
+            try (FileChannel in = FileChannel.open(Path.of(u.getTempPath()), StandardOpenOption.READ)) {
+                ByteBuffer buf = ByteBuffer.allocate(128 * 1024);
+                for (long position = sha1.length(); position < u.getUploadLength(); ) {
+                    buf.clear().limit((int) Math.min(buf.capacity(), u.getUploadLength() - position));
+                    int read = in.read(buf, position);
+                    if (read < 0) throw new IOException("Temp file of " + u.getTusId() + " is shorter than its length");
+                    buf.flip();
+                    sha1.update(buf);
+                    position += read;
+                }
+            }
+            return sha1.digest();
+        }
+        log.info("No usable checksum state for tusId={}, re-hashing temp file", u.getTusId());
+        return TusAppUtils.calculateChecksum(Path.of(u.getTempPath()).toFile());
+    }
+
+    /**
+     * A final upload is committed: its parts are consumed (the spec allows deleting them
+     * after concatenation), and it is charged as a whole, so the parts' reservations go.
+     */
+    private void consumeParts(V2TusUpload u) {
+        if (u.getConcatType() != V2TusUpload.ConcatType.FINAL) return;
+        for (V2TusUpload part : repo.findByTusIdIn(partIds(u))) {
+            quotaService.release(part.getUserId(), part.getTusId());
+            try {
+                Files.deleteIfExists(Path.of(part.getTempPath()));
+            } catch (IOException e) {
+                // Already committed, so this must not fail the completion
+                log.warn("Could not delete consumed partial upload {}: {}", part.getTusId(), e.getMessage());
+            }
+        }
+    }
+
+    /** A final upload failed: its parts can be used by another final upload again. */
+    private void abandonParts(V2TusUpload u) {
+        if (u.getConcatType() != V2TusUpload.ConcatType.FINAL) return;
+        repo.releaseParts(partIds(u), u.getTempPath());
+    }
+
+    /** A FAILED upload cannot be resumed, so nothing will ever read its bytes again. */
+    private void deleteTempFile(V2TusUpload u) {
+        try {
+            Files.deleteIfExists(Path.of(u.getTempPath()));
+        } catch (IOException e) {
+            log.warn("Could not delete temp file of failed upload {}: {}", u.getTusId(), e.getMessage());
+        }
+    }
+
+    private static List<String> partIds(V2TusUpload u) {
+        return List.of(u.getConcatParts().split(" "));
     }
 
     /**
-     * Runs all database write operations inside a single, fast transaction.
+     * Turns the completed upload into an asset. The file work (blob store, link) happens
+     * here; the DB writes (asset, quota, exif, upload state, outbox jobs) are handed to the
+     * CompletionWriter, which group-commits them with concurrent completions.
      * This is called AFTER all slow file I/O (checksum) is complete.
      */
-    @Transactional
     public Asset processCompletedUpload(V2TusUpload u, String userId, byte[] checksumBytes) throws IOException {
+        UUID ownerId = TusAppUtils.parseUUID(Objects.requireNonNull(userId, "User ID not found in metadata"));
 
-        // ✅ --- START OPTIMIZATION ---
-        // 1. Build the final, unique path *before* any DB calls, using the tusId.
+        // 1. Build the final, unique path using the tusId.
         String uniqueFilename = u.getTusId() + "_" + u.getFilename();
+        AssetType assetType = determineAssetType(Objects.requireNonNull(u.getFiletype()));
         String finalAssetPath = buildPath(
                 userId, // We need the user ID for the folder structure
-                determineAssetType(u.getFiletype()).name(),
+                assetType.name(),
                 uniqueFilename
         );
-        // ✅ --- END OPTIMIZATION ---
+        Asset asset = createAsset(u.getTusId(), finalAssetPath, parseUploadMetadata(u.getMetadata()), assetType, checksumBytes);
 
-        // 2. Create the Asset, User Quota, Exif (all DB ops)
-        //    Pass the final path directly.
-        Asset asset = createAssetAndDependencies(u, userId, checksumBytes, finalAssetPath);
+        // 2. Store the bytes once per content and hard-link them to the per-user path.
+        //    Idempotent, so a completion retried after a failed commit finds its file again.
+        long moveStart = System.nanoTime();
+        Path finalPath = Path.of(finalAssetPath);
+        ContentBlobStore.StoredBlob blob = blobStore.store(checksumBytes, Path.of(u.getTempPath()), finalPath);
+        metrics.fileMove(UploadMetrics.TUS, u.getFiletype(), System.nanoTime() - moveStart);
 
-        // 3. Move file to final location (fast rename)
-        Path finalPath = Path.of(asset.getOriginalPath()); // Get the path we just saved
-        Files.createDirectories(finalPath.getParent());
-        Files.move(Path.of(u.getTempPath()), finalPath, StandardCopyOption.REPLACE_EXISTING);
-
-        // 4. Update V2TusUpload state to COMPLETED
+        // 3. Asset, quota, exif, blob reference, COMPLETED state and follow-up jobs commit together
         u.setFinalPath(finalPath.toString());
+        u.setAssetId(asset.getId());
         u.setStatus(V2TusUpload.Status.COMPLETED);
-        repo.save(u); // Save the final state for the TUS upload
+        long dbStart = System.nanoTime(); // includes waiting for the group commit
+        completionWriter.write(new CompletionWriter.Completion(u, asset, blob, ownerId, u.getUploadLength(), asyncJobs(asset, blob)));
+        metrics.completionDb(UploadMetrics.TUS, u.getFiletype(), System.nanoTime() - dbStart);
 
         return asset;
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Served from the session cache; no transaction here so a cache hit never
+     * borrows a DB connection (HEAD storms after reconnects).
+     */
     public V2TusUpload info(String tusId) {
-        return repo.findByTusId(tusId).orElseThrow(() -> new IllegalStateException("Upload not found: " + tusId));
+        return sessionCache.find(tusId, progressWriter::load).orElseThrow(() -> new IllegalStateException("Upload not found: " + tusId));
+    }
+
+    /**
+     * tus expiration extension: unfinished uploads expire once idle for app.expiration.tus-ttl
+     * (see UploadReaper).
+     */
+    public Instant expiresAt(Instant lastActivity) {
+        return (lastActivity != null ? lastActivity : Instant.now()).plus(uploadTtl);
     }
 
     @Transactional
     public void terminate(String tusId) throws Exception {
         V2TusUpload u = repo.findByTusId(tusId).orElseThrow(() -> new IllegalStateException("Upload not found: " + tusId));
+        progressWriter.discard(tusId);
         u.setStatus(V2TusUpload.Status.CANCELLED);
-        Files.deleteIfExists(Path.of(u.getTempPath()));
+        // Uploads completed from a known checksum never had a temp file
+        if (u.getTempPath() != null) {
+            Files.deleteIfExists(Path.of(u.getTempPath()));
+        }
         repo.save(u);
+        sessionCache.evict(tusId);
+        quotaService.release(u.getUserId(), tusId);
     }
 
 
-    private Asset createAssetAndDependencies(V2TusUpload completedUpload, String userId, byte[] checksumBytes, String finalAssetPath) throws IOException {
-        Map<String, String> headerData = parseUploadMetadata(completedUpload.getMetadata());
-
-        UUID parsedUUID = TusAppUtils.parseUUID(Objects.requireNonNull(userId, "User ID not found in metadata"));
-        User user = fetchUser(parsedUUID);
-        AssetType assetType = determineAssetType(Objects.requireNonNull(completedUpload.getFiletype()));
-
-        // All DB writes happen here
-        Asset asset = saveAssetDataInTransaction(
-                completedUpload.getTusId(),
-                completedUpload.getUploadLength(),
-                headerData,
-                user,
-                assetType,
-                checksumBytes,
-                finalAssetPath
-        );
-
-        return asset;
-    }
-
-    @Transactional
-    protected Asset saveAssetDataInTransaction(String tusId, Long size, Map<String, String> headerData, User user, AssetType assetType, byte[] checksumBytes, String finalAssetPath) {
-        Asset asset = createAsset(tusId, user, finalAssetPath, headerData, assetType, checksumBytes);
-
-        user.setQuotaUsageInBytes(user.getQuotaUsageInBytes() + size);
-        userRepository.save(user);
-
-        upsertExif(asset.getId(), size);
-
-        return asset;
-    }
-
     public static Map<String, String> parseUploadMetadata(String header) {
         Map<String, String> map = new HashMap<>();
         if (header == null || header.isBlank()) return map;
@@ -210,21 +588,16 @@ public class TusService {
         return map;
     }
 
-    private User fetchUser(UUID userId) {
-        return userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalStateException("User not found"));
-    }
-
     private String buildPath(String userId, String fileType, String uniqueFilename) {
         return Paths.get(finalDir, "originals", userId, fileType, uniqueFilename).toString();
     }
 
-    private @NotNull Asset createAsset(String tusId, User user, String originalPath, Map<String, String> headerData, AssetType assetType, byte[] checksumBytes) {
+    /** New, not yet persisted asset; the owner is set by the CompletionWriter. */
+    private @NotNull Asset createAsset(String tusId, String originalPath, Map<String, String> headerData, AssetType assetType, byte[] checksumBytes) {
         OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
 
         Asset asset = new Asset();
         asset.setId(TusAppUtils.parseUUID(tusId));
-        asset.setOwner(user);
         asset.setOriginalPath(originalPath);
         asset.setDeviceAssetId(headerData.get("deviceAssetId"));
         asset.setDeviceId(headerData.get("deviceId"));
@@ -278,35 +651,44 @@ public class TusService {
         }
         asset.setDerivativesCompleted(0);
 
-        return assetRepository.saveAndFlush(asset);
+        return asset;
     }
 
 
-    public void upsertExif(UUID assetId, long fileSizeInByte) {
-        AssetExif exif = new AssetExif();
-        exif.setAssetId(assetId);
-        exif.setFileSizeInByte(fileSizeInByte);
-        exif.setUpdateId(UUID.randomUUID());
-        assetExifRepository.upsertExif(exif);
-    }
+    /** Follow-up jobs for a new asset; written to the outbox together with the asset. */
+    private List<QueuedJob> asyncJobs(Asset asset, ContentBlobStore.StoredBlob blob) {
+        String assetId = asset.getId().toString();
+
+        // Bytes identical to an asset that is already processed: copy its derivatives and S3
+        // objects instead of transcoding, thumbnailing and uploading the original again
+        if (blob != null && blob.deduplicated()) {
+            Optional<UUID> processed = contentBlobRepository.findProcessedAsset(blob.checksum(), asset.getId());
+            if (processed.isPresent()) {
+                log.debug("Queued derivative clone for Asset: id={} from={}", asset.getId(), processed.get());
+                return List.of(
+                        new QueuedJob(JobDispatcher.DERIVATIVE_CLONE, assetId + ":" + processed.get()),
+                        new QueuedJob(JobDispatcher.METADATA, assetId));
+            }
+        }
 
-    private void queueAsyncJobs(Asset asset) {
+        List<QueuedJob> jobs = new ArrayList<>(4);
         if (asset.getType() != null && asset.getType() == AssetType.VIDEO) {
-            redisTemplate.opsForList().rightPush("video-transcode-queue", asset.getId().toString());
+            jobs.add(new QueuedJob(JobDispatcher.VIDEO_TRANSCODE, assetId));
         }
-        redisTemplate.opsForList().rightPush("thumbnail-queue", asset.getId().toString());
-        redisTemplate.opsForList().rightPush("metadata-queue", asset.getId().toString());
+        jobs.add(new QueuedJob(JobDispatcher.THUMBNAIL, assetId));
+        jobs.add(new QueuedJob(JobDispatcher.METADATA, assetId));
 
         // Queue S3 sync job for the original file
         // Derivatives (thumbnails, playback videos) will queue independently with their own IDs
-        redisTemplate.opsForList().rightPush("s3-sync-queue", asset.getId().toString());
+        jobs.add(new QueuedJob(JobDispatcher.S3_SYNC, assetId));
         log.debug("Queued S3 sync for Asset: id={}", asset.getId());
+        return jobs;
     }
 
     public static AssetType determineAssetType(String mimeType) {
         return switch (mimeType) {
             case null -> {
-                log.warn("Mime type is null, defaulting to OTHER");
+                log.debug("Mime type is null, defaulting to OTHER");
                 yield AssetType.OTHER;
             }
             case String s when s.startsWith("image/") -> AssetType.IMAGE;
@@ -314,7 +696,7 @@ public class TusService {
             case String s when s.startsWith("audio/") -> AssetType.AUDIO;
             case String s when s.contains("pdf") || s.contains("document") || s.contains("text/plain") -> AssetType.DOCUMENT;
             default -> {
-                log.warn("Unknown mime type: {}, defaulting to OTHER", mimeType);
+                log.debug("Unknown mime type: {}, defaulting to OTHER", mimeType);
                 yield AssetType.OTHER;
             }
         };
@@ -0,0 +1,158 @@
+package com.tus.upload.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tus.upload.entity.V2TusUpload;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Two-tier cache of tus session state so HEAD/PATCH do not hit Postgres per request.
+ * L1 is a small per-node Caffeine cache, L2 is the shared Redis entry which is written
+ * through on every update. Every write also publishes the tusId on {@value #INVALIDATE_CHANNEL}
+ * so the other nodes drop their L1 copy; the short L1 TTL only bounds staleness when a
+ * message is lost (Redis down or resubscribing). The offset itself is never trusted from
+ * the cache alone, the compare-and-set in TusProgressWriter has the last word.
+ * Redis failures degrade to a DB lookup, they never fail the upload.
+ */
+@Component
+@Slf4j
+public class TusSessionCache {
+
+    private static final String KEY_PREFIX = "tus:session:";
+    static final String INVALIDATE_CHANNEL = "tus:session:invalidate";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    // Tells our own invalidation messages apart from other nodes'
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Cache<String, V2TusUpload> local;
+    private final Duration redisTtl;
+
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter misses;
+
+    public TusSessionCache(RedisTemplate<String, Object> redisTemplate,
+                           StringRedisTemplate stringRedisTemplate,
+                           RedisMessageListenerContainer listenerContainer,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.tus.session-cache.max-size:10000}") long maxSize,
+                           @Value("${app.tus.session-cache.local-ttl:5s}") Duration localTtl,
+                           @Value("${app.tus.session-cache.redis-ttl:30m}") Duration redisTtl) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisTtl = redisTtl;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+
+        this.localHits = Counter.builder("tus.session.cache").tag("tier", "local").tag("result", "hit").register(meterRegistry);
+        this.redisHits = Counter.builder("tus.session.cache").tag("tier", "redis").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("tus.session.cache").tag("tier", "db").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("tus.session.cache.local.size", local, Cache::estimatedSize).register(meterRegistry);
+
+        listenerContainer.addMessageListener(this::onInvalidate, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * Looks the session up in L1, then Redis, then via {@code loader} (the DB).
+     * Always returns a private copy so callers can mutate it freely.
+     */
+    public Optional<V2TusUpload> find(String tusId, Function<String, Optional<V2TusUpload>> loader) {
+        V2TusUpload cached = local.getIfPresent(tusId);
+        if (cached != null) {
+            localHits.increment();
+            return Optional.of(copyOf(cached));
+        }
+
+        V2TusUpload shared = readShared(tusId);
+        if (shared != null) {
+            redisHits.increment();
+            local.put(tusId, shared);
+            return Optional.of(copyOf(shared));
+        }
+
+        misses.increment();
+        Optional<V2TusUpload> loaded = loader.apply(tusId);
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    /** Writes the latest state through to both tiers. */
+    public void put(V2TusUpload u) {
+        V2TusUpload snapshot = copyOf(u);
+        local.put(u.getTusId(), snapshot);
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + u.getTusId(), snapshot, redisTtl);
+        } catch (DataAccessException e) {
+            // Drop the shared entry so no node reads an outdated offset from Redis
+            log.warn("Failed to cache tus session {} in Redis: {}", u.getTusId(), e.getMessage());
+            evictShared(u.getTusId());
+        }
+        publishInvalidation(u.getTusId());
+    }
+
+    public void evict(String tusId) {
+        local.invalidate(tusId);
+        evictShared(tusId);
+        publishInvalidation(tusId);
+    }
+
+    private void publishInvalidation(String tusId) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, nodeId + " " + tusId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to publish invalidation of tus session {}: {}", tusId, e.getMessage());
+        }
+    }
+
+    /** Another node changed the session: our L1 copy is outdated, the next read goes to Redis. */
+    private void onInvalidate(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int space = body.indexOf(' ');
+        if (space < 0 || body.startsWith(nodeId + " ")) return;
+        local.invalidate(body.substring(space + 1));
+    }
+
+    private V2TusUpload readShared(String tusId) {
+        try {
+            return redisTemplate.opsForValue().get(KEY_PREFIX + tusId) instanceof V2TusUpload u ? u : null;
+        } catch (DataAccessException e) {
+            log.warn("Redis lookup for tus session {} failed, falling back to DB: {}", tusId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void evictShared(String tusId) {
+        try {
+            redisTemplate.delete(KEY_PREFIX + tusId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to evict tus session {} from Redis: {}", tusId, e.getMessage());
+        }
+    }
+
+    private static V2TusUpload copyOf(V2TusUpload source) {
+        V2TusUpload copy = new V2TusUpload();
+        BeanUtils.copyProperties(source, copy);
+        return copy;
+    }
+}
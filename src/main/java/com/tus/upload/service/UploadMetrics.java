@@ -0,0 +1,90 @@
+package com.tus.upload.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meters for each phase of the upload hot path, so a slow upload can be pinned on the
+ * network/disk (append), checksum, DB, file move or Redis. Tagged by protocol (tus | chunked)
+ * and asset_type (the AssetType of the MIME type, see TusService.determineAssetType).
+ * Histograms and percentiles are switched on for the "upload" prefix in application.yml.
+ * Callers measure with System.nanoTime() and report the elapsed nanos.
+ */
+@Component
+public class UploadMetrics {
+
+    public static final String TUS = "tus";
+    public static final String CHUNKED = "chunked";
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> inFlight = Map.of(TUS, new AtomicInteger(), CHUNKED, new AtomicInteger());
+
+    public UploadMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        inFlight.forEach((protocol, writes) -> Gauge.builder("upload.inflight", writes, AtomicInteger::get)
+                .description("Request bodies being written to disk right now")
+                .tag("protocol", protocol)
+                .register(registry));
+    }
+
+    /** A PATCH / chunk body started streaming; pair with {@link #writeFinished}. */
+    public void writeStarted(String protocol) {
+        inFlight.get(protocol).incrementAndGet();
+    }
+
+    public void writeFinished(String protocol) {
+        inFlight.get(protocol).decrementAndGet();
+    }
+
+    /** One request body written: latency of the write and the bytes/sec it achieved. */
+    public void written(String protocol, String contentType, long bytes, long nanos) {
+        Tags tags = tags(protocol, contentType);
+        Timer.builder("upload.append").tags(tags).register(registry).record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("upload.bytes").baseUnit("bytes").tags(tags).register(registry).increment(bytes);
+        if (nanos > 0 && bytes > 0) {
+            DistributionSummary.builder("upload.append.throughput").baseUnit("bytes_per_second").tags(tags)
+                    .register(registry).record(bytes * 1e9 / nanos);
+        }
+    }
+
+    /** Final checksum of a completed upload (digest finish, re-hash or tree hash). */
+    public void checksum(String protocol, String contentType, long nanos) {
+        timer("upload.checksum", protocol, contentType).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** DB writes of a completion: asset, quota, exif, upload state, outbox. */
+    public void completionDb(String protocol, String contentType, long nanos) {
+        timer("upload.completion.db", protocol, contentType).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Getting the bytes to their final path (blob store + link, rename or chunk assembly). */
+    public void fileMove(String protocol, String contentType, long nanos) {
+        timer("upload.file.move", protocol, contentType).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** One pipelined publish of post-upload jobs to Redis. */
+    public void jobDispatch(String transport, int jobs, long nanos) {
+        Timer.builder("upload.jobs.dispatch").tag("transport", transport).register(registry).record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("upload.jobs.dispatched").tag("transport", transport).register(registry).increment(jobs);
+    }
+
+    private Timer timer(String name, String protocol, String contentType) {
+        return Timer.builder(name).tags(tags(protocol, contentType)).register(registry);
+    }
+
+    private static Tags tags(String protocol, String contentType) {
+        // Bounded tag value: one per AssetType
+        String assetType = TusService.determineAssetType(contentType).name().toLowerCase(Locale.ROOT);
+        return Tags.of("protocol", protocol, "asset_type", assetType);
+    }
+}
@@ -0,0 +1,129 @@
+package com.tus.upload.service;
+
+import com.tus.upload.repo.ExpiredUploadNativeRepository;
+import com.tus.upload.repo.ExpiredUploadNativeRepository.ExpiredTusUpload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Expires abandoned uploads (tus and chunked) and deletes their temp files.
+ * Runs on the virtual-thread executor in small batches with a pause in between,
+ * so the file deletes never saturate the temp volume while live uploads are writing.
+ */
+@Component
+@Slf4j
+public class UploadReaper {
+
+    private final ExpiredUploadNativeRepository expiredUploads;
+    private final TusSessionCache sessionCache;
+    private final TusProgressWriter progressWriter;
+    private final UploadService uploadService;
+    private final QuotaService quotaService;
+    private final Executor taskExecutor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${app.expiration.tus-ttl:24h}")
+    private Duration tusTtl;
+
+    @Value("${app.expiration.chunked-ttl:24h}")
+    private Duration chunkedTtl;
+
+    @Value("${app.expiration.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.expiration.batch-pause-ms:500}")
+    private long batchPauseMs;
+
+    public UploadReaper(ExpiredUploadNativeRepository expiredUploads,
+                        TusSessionCache sessionCache,
+                        TusProgressWriter progressWriter,
+                        UploadService uploadService,
+                        QuotaService quotaService,
+                        @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.expiredUploads = expiredUploads;
+        this.sessionCache = sessionCache;
+        this.progressWriter = progressWriter;
+        this.uploadService = uploadService;
+        this.quotaService = quotaService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @Scheduled(fixedDelayString = "${app.expiration.scan-interval-ms:600000}", initialDelayString = "${app.expiration.initial-delay-ms:60000}")
+    public void scheduleReap() {
+        if (!running.compareAndSet(false, true)) {
+            return; // previous run still going
+        }
+        taskExecutor.execute(() -> {
+            try {
+                reap();
+            } catch (Exception e) {
+                log.error("Upload reaper failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    void reap() throws InterruptedException {
+        int tus = 0;
+        List<ExpiredTusUpload> tusBatch;
+        do {
+            tusBatch = expiredUploads.expireTusUploads(Instant.now().minus(tusTtl), batchSize);
+            for (ExpiredTusUpload u : tusBatch) {
+                progressWriter.discard(u.tusId());
+                sessionCache.evict(u.tusId());
+                quotaService.release(u.userId(), u.tusId());
+                deleteQuietly(Path.of(u.tempPath()));
+            }
+            tus += tusBatch.size();
+            pause(tusBatch.size());
+        } while (tusBatch.size() == batchSize);
+
+        int chunked = 0;
+        List<UUID> chunkedBatch;
+        do {
+            chunkedBatch = expiredUploads.expireChunkedUploads(Instant.now().minus(chunkedTtl), batchSize);
+            for (UUID uploadId : chunkedBatch) {
+                try {
+                    uploadService.deleteSessionFiles(uploadId);
+                } catch (IOException e) {
+                    log.warn("Could not delete files of expired chunked upload {}: {}", uploadId, e.getMessage());
+                }
+            }
+            chunked += chunkedBatch.size();
+            pause(chunkedBatch.size());
+        } while (chunkedBatch.size() == batchSize);
+
+        if (tus > 0 || chunked > 0) {
+            log.info("Expired {} tus uploads and {} chunked uploads", tus, chunked);
+        }
+    }
+
+    private void pause(int lastBatch) throws InterruptedException {
+        if (lastBatch == batchSize && batchPauseMs > 0) {
+            Thread.sleep(batchPauseMs);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete expired temp file {}: {}", path, e.getMessage());
+        }
+    }
+}
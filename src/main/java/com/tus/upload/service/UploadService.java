@@ -3,61 +3,108 @@ package com.tus.upload.service;
 
 import com.tus.upload.entity.V2Upload;
 import com.tus.upload.entity.V2UploadChunk;
+import com.tus.upload.entity.dto.ChunkRange;
+import com.tus.upload.exception.UploadException;
+import com.tus.upload.repo.UploadChunkBatchRepository;
 import com.tus.upload.repo.UploadChunkRepository;
 import com.tus.upload.repo.UploadRepository;
+import com.tus.upload.util.BoundedInputStream;
+import com.tus.upload.util.ChunkTreeHash;
+import com.tus.upload.util.UuidV7;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 @Service
+@Slf4j
 public class UploadService {
     private final UploadRepository uploads;
     private final UploadChunkRepository chunks;
+    private final UploadChunkBatchRepository chunkBatches;
     private final Path tempDir;
     private final Path finalDir;
+    private final V2Upload.StorageMode storageMode;
+    private final UploadMetrics metrics;
+    // Hashes chunks at commit that have no stored digest (disk reads, so not the common pool)
+    private final ForkJoinPool digestPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 
     public UploadService(
             UploadRepository uploads,
             UploadChunkRepository chunks,
+            UploadChunkBatchRepository chunkBatches,
+            UploadMetrics metrics,
             @Value("${app.storage.temp-dir}") String tempDir,
-            @Value("${app.storage.final-dir}") String finalDir
+            @Value("${app.storage.final-dir}") String finalDir,
+            @Value("${app.upload.chunked.storage-mode:direct}") V2Upload.StorageMode storageMode
     ) throws IOException {
         this.uploads = uploads;
         this.chunks = chunks;
+        this.chunkBatches = chunkBatches;
+        this.metrics = metrics;
         this.tempDir = Path.of(tempDir);
         this.finalDir = Path.of(finalDir);
+        this.storageMode = storageMode;
         Files.createDirectories(this.tempDir);
         Files.createDirectories(this.finalDir);
     }
 
     @Transactional
-    public V2Upload initUpload(String filename, String contentType, long totalSize, int chunkSize) {
+    public V2Upload initUpload(String filename, String contentType, long totalSize, int chunkSize) throws IOException {
         int totalChunks = Math.toIntExact((totalSize + chunkSize - 1) / chunkSize);
         V2Upload u = new V2Upload();
-        u.setId(UUID.randomUUID());
+        u.setId(UuidV7.randomUUID());
         u.setFilename(filename);
         u.setContentType(contentType);
         u.setTotalSize(totalSize);
         u.setChunkSize(chunkSize);
         u.setTotalChunks(totalChunks);
         u.setStatus(V2Upload.Status.PENDING);
+        u.setStorageMode(storageMode);
+        u.setReceivedBitmap(new byte[(totalChunks + 7) / 8]);
+
+        if (storageMode == V2Upload.StorageMode.DIRECT) {
+            // Sparse preallocation: chunks land at their final offsets, nothing to reassemble later
+            Path data = dataPath(u.getId());
+            Files.createDirectories(data.getParent());
+            try (RandomAccessFile raf = new RandomAccessFile(data.toFile(), "rw")) {
+                raf.setLength(totalSize);
+            }
+        }
         uploads.save(u);
         return u;
     }
 
-    @Transactional
+    /**
+     * Stores one chunk without any transaction or row lock around the body transfer, so
+     * N chunks of one upload can stream in parallel. The chunk row is recorded with an
+     * idempotent insert afterwards; a retried chunk simply loses the race harmlessly.
+     */
     public void storeChunk(UUID uploadId, int idx, InputStream bodyStream, Integer declaredSize, String checksum) throws IOException {
-        V2Upload u = uploads.lockById(uploadId).orElseThrow(() -> new NoSuchElementException("Upload not found"));
-        if (u.getStatus() == V2Upload.Status.COMPLETED || u.getStatus() == V2Upload.Status.CANCELLED) {
+        V2Upload u = uploads.findById(uploadId).orElseThrow(() -> new NoSuchElementException("Upload not found"));
+        if (u.getStatus() != V2Upload.Status.PENDING && u.getStatus() != V2Upload.Status.IN_PROGRESS) {
             throw new IllegalStateException("Upload not accepting chunks");
         }
         if (idx < 0 || idx >= u.getTotalChunks()) throw new IllegalArgumentException("Invalid chunk index");
@@ -68,57 +115,233 @@ public class UploadService {
         pk.setIdx(idx);
         if (chunks.existsById(pk)) return; // idempotent
 
-        Path sessionDir = tempDir.resolve(uploadId.toString());
-        Files.createDirectories(sessionDir);
+        V2UploadChunk c = writeChunk(u, idx, bodyStream, declaredSize, checksum);
+        chunks.insertIfAbsent(c.getUploadId(), c.getIdx(), c.getSize(), c.getChecksum(), c.getStoredPath());
+        // Always set the bit (idempotent) so a crash between the two statements heals on retry
+        uploads.markChunkReceived(uploadId, idx);
+    }
 
-        Path chunkPath = sessionDir.resolve("chunk-" + idx);
-        try (OutputStream os = Files.newOutputStream(chunkPath, StandardOpenOption.CREATE_NEW)) {
-            int total = bodyStream.transferTo(os) >= 0 ? (int) Files.size(chunkPath) : 0;
-            if (declaredSize != null && declaredSize != total) {
-                Files.deleteIfExists(chunkPath);
-                throw new IllegalArgumentException("Chunk size mismatch");
+    /**
+     * Stores several chunks sent in one request body as consecutive frames of
+     * {@code [int32 index][int32 length][length bytes]} (big-endian), until end of stream.
+     * Frames are written as they stream in; all chunk rows are recorded with one JDBC batch
+     * at the end. Returns the stored indexes in request order.
+     */
+    public List<Integer> storeChunkBatch(UUID uploadId, InputStream bodyStream) throws IOException {
+        V2Upload u = uploads.findById(uploadId).orElseThrow(() -> new NoSuchElementException("Upload not found"));
+        if (u.getStatus() != V2Upload.Status.PENDING && u.getStatus() != V2Upload.Status.IN_PROGRESS) {
+            throw new IllegalStateException("Upload not accepting chunks");
+        }
+
+        DataInputStream in = new DataInputStream(bodyStream);
+        List<V2UploadChunk> stored = new ArrayList<>();
+        while (true) {
+            int idx;
+            try {
+                idx = in.readInt();
+            } catch (EOFException end) {
+                break;
+            }
+            int length = in.readInt();
+            if (idx < 0 || idx >= u.getTotalChunks()) throw new IllegalArgumentException("Invalid chunk index " + idx);
+            if (length < 0 || length > u.getChunkSize()) throw new IllegalArgumentException("Invalid length for chunk " + idx);
+
+            BoundedInputStream frame = new BoundedInputStream(in, length);
+            stored.add(writeChunk(u, idx, frame, length, null));
+            if (frame.remaining() > 0) {
+                throw new EOFException("Body ended inside chunk " + idx);
             }
         }
 
+        chunkBatches.recordChunks(uploadId, stored);
+        return stored.stream().map(V2UploadChunk::getIdx).toList();
+    }
+
+    private V2UploadChunk writeChunk(V2Upload u, int idx, InputStream bodyStream, Integer declaredSize, String checksum) throws IOException {
+        metrics.writeStarted(UploadMetrics.CHUNKED);
+        long start = System.nanoTime();
+        try {
+            V2UploadChunk c = writeChunkBody(u, idx, bodyStream, declaredSize, checksum);
+            metrics.written(UploadMetrics.CHUNKED, u.getContentType(), c.getSize(), System.nanoTime() - start);
+            return c;
+        } finally {
+            metrics.writeFinished(UploadMetrics.CHUNKED);
+        }
+    }
+
+    /**
+     * Writes one chunk, computing its SHA-256 while it streams. The digest is always stored
+     * (hex) so commit never has to re-read the chunk; if the client sent X-Chunk-Checksum
+     * and it does not match, the chunk is not recorded and 460 is returned.
+     */
+    private V2UploadChunk writeChunkBody(V2Upload u, int idx, InputStream bodyStream, Integer declaredSize, String checksum) throws IOException {
+        String expected = checksum != null ? expectedSha256(checksum) : null;
+        MessageDigest sha256 = ChunkTreeHash.sha256();
+        InputStream in = new DigestInputStream(bodyStream, sha256);
+
         V2UploadChunk c = new V2UploadChunk();
-        c.setUploadId(uploadId);
+        c.setUploadId(u.getId());
         c.setIdx(idx);
-        c.setSize((int) Files.size(chunkPath));
-        c.setChecksum(checksum);
+
+        if (u.getStorageMode() == V2Upload.StorageMode.DIRECT) {
+            Path data = dataPath(u.getId());
+            // On mismatch the bytes stay at the offset but the bit is never set, so the chunk is still missing
+            c.setSize(writeAtOffset(u, idx, in, declaredSize, data));
+            c.setChecksum(verified(idx, sha256, expected));
+            c.setStoredPath(data.toString());
+            return c;
+        }
+
+        Path sessionDir = tempDir.resolve(u.getId().toString());
+        Files.createDirectories(sessionDir);
+
+        // Write under a private name and rename, so concurrent retries of one chunk never collide
+        Path chunkPath = sessionDir.resolve("chunk-" + idx);
+        Path partial = sessionDir.resolve("chunk-" + idx + "." + UUID.randomUUID() + ".tmp");
+        long total;
+        try (OutputStream os = Files.newOutputStream(partial, StandardOpenOption.CREATE_NEW)) {
+            total = in.transferTo(os);
+        } catch (IOException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        if (declaredSize != null && declaredSize != total) {
+            Files.deleteIfExists(partial);
+            throw new IllegalArgumentException("Chunk size mismatch");
+        }
+        try {
+            c.setChecksum(verified(idx, sha256, expected));
+        } catch (UploadException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, chunkPath, StandardCopyOption.ATOMIC_MOVE);
+
+        c.setSize((int) total);
         c.setStoredPath(chunkPath.toString());
-        chunks.save(c);
+        return c;
+    }
 
-        // Move status to IN_PROGRESS on first chunk
-        if (u.getStatus() == V2Upload.Status.PENDING) {
-            u.setStatus(V2Upload.Status.IN_PROGRESS);
-            uploads.save(u);
+    private static String verified(int idx, MessageDigest sha256, String expected) {
+        String actual = HexFormat.of().formatHex(sha256.digest());
+        if (expected != null && !expected.equals(actual)) {
+            throw new UploadException(460, "Checksum mismatch for chunk " + idx);
         }
+        return actual;
     }
 
-    @Transactional(readOnly = true)
-    public List<Integer> missingChunks(UUID uploadId) {
-        V2Upload u = uploads.findById(uploadId).orElseThrow();
-        Set<Integer> received = new HashSet<>(chunks.findReceivedIndexes(uploadId));
-        List<Integer> missing = new ArrayList<>();
-        for (int i = 0; i < u.getTotalChunks(); i++) {
-            if (!received.contains(i)) missing.add(i);
+    /**
+     * X-Chunk-Checksum: SHA-256 as hex or base64, optionally prefixed "sha256:" or "sha256 ".
+     * Anything else (older clients send other digests) is not verified: returns null.
+     */
+    static String expectedSha256(String header) {
+        String value = header.trim();
+        if (value.regionMatches(true, 0, "sha256", 0, 6) && value.length() > 7
+                && (value.charAt(6) == ':' || value.charAt(6) == ' ')) {
+            value = value.substring(7).trim();
+        }
+        if (isSha256Hex(value)) return value.toLowerCase(Locale.ROOT);
+        try {
+            byte[] digest = Base64.getDecoder().decode(value);
+            if (digest.length == 32) return HexFormat.of().formatHex(digest);
+        } catch (IllegalArgumentException ignored) {
+            // fall through
+        }
+        log.debug("Ignoring X-Chunk-Checksum that is not a SHA-256 digest: {}", header);
+        return null;
+    }
+
+    private static boolean isSha256Hex(String s) {
+        if (s == null || s.length() != 64) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.digit(s.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * DIRECT mode: positional write of chunk {@code idx} into the preallocated file.
+     * The chunk must be exactly its expected length so it can never spill into its neighbour.
+     */
+    private int writeAtOffset(V2Upload u, int idx, InputStream bodyStream, Integer declaredSize, Path data) throws IOException {
+        long position = (long) idx * u.getChunkSize();
+        long expected = Math.min(u.getChunkSize(), u.getTotalSize() - position);
+        if (declaredSize != null && declaredSize != expected) {
+            throw new IllegalArgumentException("Chunk size mismatch");
+        }
+
+        ReadableByteChannel in = Channels.newChannel(bodyStream);
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.WRITE)) {
+            long written = 0;
+            long n;
+            while (written < expected && (n = channel.transferFrom(in, position + written, expected - written)) > 0) {
+                written += n;
+            }
+            if (written != expected || bodyStream.read() != -1) {
+                throw new IllegalArgumentException("Chunk size mismatch");
+            }
+        }
+        return (int) expected;
+    }
+
+    private Path dataPath(UUID uploadId) {
+        return tempDir.resolve(uploadId.toString()).resolve("upload.part");
+    }
+
+    /**
+     * Missing chunks as ranges, computed from the upload's received bitmap instead of
+     * loading every chunk index (100k-chunk uploads poll /status).
+     */
+    public List<ChunkRange> missingRanges(V2Upload u) {
+        BitSet received = receivedChunks(u);
+        List<ChunkRange> missing = new ArrayList<>();
+        int first = received.nextClearBit(0);
+        while (first < u.getTotalChunks()) {
+            int next = received.nextSetBit(first);
+            int last = (next < 0 || next > u.getTotalChunks() ? u.getTotalChunks() : next) - 1;
+            missing.add(new ChunkRange(first, last));
+            first = received.nextClearBit(last + 1);
         }
         return missing;
     }
 
+    private BitSet receivedChunks(V2Upload u) {
+        if (u.getReceivedBitmap() != null) {
+            return BitSet.valueOf(u.getReceivedBitmap());
+        }
+        // Uploads created before the bitmap existed
+        BitSet received = new BitSet(u.getTotalChunks());
+        chunks.findReceivedIndexes(u.getId()).forEach(received::set);
+        return received;
+    }
+
     @Transactional
     public void commit(UUID uploadId) throws IOException {
         V2Upload u = uploads.lockById(uploadId)
                 .orElseThrow(() -> new NoSuchElementException("Upload not found"));
 
         // Step 1: Verify all chunks exist
-        List<Integer> missing = missingChunks(uploadId);
+        List<ChunkRange> missing = missingRanges(u);
         if (!missing.isEmpty()) {
             throw new IllegalStateException("Cannot commit. Missing chunks: " + missing);
         }
 
         Path sessionDir = tempDir.resolve(uploadId.toString());
         Path finalPath = finalDir.resolve(u.getFilename());
+        long checksumStart = System.nanoTime();
+        u.setContentHash(contentHash(u));
+        metrics.checksum(UploadMetrics.CHUNKED, u.getContentType(), System.nanoTime() - checksumStart);
+
+        long moveStart = System.nanoTime();
+        if (u.getStorageMode() == V2Upload.StorageMode.DIRECT) {
+            // Every chunk was length-checked at its offset, so the file is already complete
+            Files.move(dataPath(uploadId), finalPath, StandardCopyOption.REPLACE_EXISTING);
+            metrics.fileMove(UploadMetrics.CHUNKED, u.getContentType(), System.nanoTime() - moveStart);
+            u.setStatus(V2Upload.Status.COMPLETED);
+            uploads.save(u);
+            deleteSessionFiles(uploadId);
+            return;
+        }
 
         // Step 2: Assemble chunks in order
         try (OutputStream out = Files.newOutputStream(finalPath,
@@ -133,6 +356,7 @@ public class UploadService {
                 }
             }
         }
+        metrics.fileMove(UploadMetrics.CHUNKED, u.getContentType(), System.nanoTime() - moveStart);
 
         // Step 3: Validate final size
         long finalSize = Files.size(finalPath);
@@ -155,11 +379,57 @@ public class UploadService {
     }
 
 
+    /**
+     * Tree hash (see ChunkTreeHash) over the digests recorded per chunk. Chunks stored before
+     * digests were computed are hashed from disk, in parallel.
+     */
+    private byte[] contentHash(V2Upload u) throws IOException {
+        String[] known = new String[u.getTotalChunks()];
+        for (V2UploadChunk c : chunks.findByUploadId(u.getId())) {
+            if (c.getIdx() < known.length && isSha256Hex(c.getChecksum())) known[c.getIdx()] = c.getChecksum();
+        }
+        try {
+            return ChunkTreeHash.root(u.getTotalChunks(), i -> known[i] != null
+                    ? HexFormat.of().parseHex(known[i])
+                    : hashStoredChunk(u, i), digestPool);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private byte[] hashStoredChunk(V2Upload u, int idx) {
+        boolean direct = u.getStorageMode() == V2Upload.StorageMode.DIRECT;
+        Path path = direct ? dataPath(u.getId()) : tempDir.resolve(u.getId().toString()).resolve("chunk-" + idx);
+        long from = direct ? (long) idx * u.getChunkSize() : 0;
+        MessageDigest sha256 = ChunkTreeHash.sha256();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long to = direct ? Math.min(from + u.getChunkSize(), u.getTotalSize()) : channel.size();
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            long position = from;
+            while (position < to) {
+                buf.clear().limit((int) Math.min(buf.capacity(), to - position));
+                int read = channel.read(buf, position);
+                if (read < 0) break;
+                buf.flip();
+                sha256.update(buf);
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sha256.digest();
+    }
+
     @Transactional
     public void cancel(UUID uploadId) throws IOException {
         V2Upload u = uploads.lockById(uploadId).orElseThrow();
         u.setStatus(V2Upload.Status.CANCELLED);
         uploads.save(u);
+        deleteSessionFiles(uploadId);
+    }
+
+    /** Removes everything stored on disk for an unfinished chunked upload. */
+    public void deleteSessionFiles(UUID uploadId) throws IOException {
         Path sessionDir = tempDir.resolve(uploadId.toString());
         if (Files.exists(sessionDir)) {
             try (Stream<Path> paths = Files.list(sessionDir)) {
@@ -171,4 +441,9 @@ public class UploadService {
 
     @Transactional(readOnly = true)
     public V2Upload getUpload(UUID id) { return uploads.findById(id).orElseThrow(); }
+
+    @PreDestroy
+    void shutdownDigestPool() {
+        digestPool.shutdownNow();
+    }
 }
@@ -0,0 +1,27 @@
+package com.tus.upload.service.append;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * Strategy for copying a PATCH body into the upload's temp file.
+ * Selected with app.tus.append.engine (heap, direct, transfer).
+ */
+public interface AppendEngine {
+
+    /**
+     * Streams {@code body} into {@code target} starting at {@code position}.
+     *
+     * @return number of bytes written
+     */
+    long append(InputStream body, FileChannel target, long position, ByteObserver observer) throws IOException;
+
+    /**
+     * False when bytes bypass user space and the observer is never called,
+     * in which case checksums have to be computed from the file afterwards.
+     */
+    default boolean observesBytes() {
+        return true;
+    }
+}
@@ -0,0 +1,22 @@
+package com.tus.upload.service.append;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sees every byte an {@link AppendEngine} writes, e.g. to hash it on the way through.
+ * The buffer handed over is a view of the written region; observers may consume it.
+ */
+@FunctionalInterface
+public interface ByteObserver {
+
+    ByteObserver NONE = data -> { };
+
+    void accept(ByteBuffer data);
+
+    default ByteObserver andThen(ByteObserver next) {
+        return data -> {
+            accept(data.duplicate());
+            next.accept(data);
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package com.tus.upload.service.append;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Original append loop: a fresh 128 KB heap buffer per PATCH.
+ */
+public class HeapAppendEngine implements AppendEngine {
+
+    private static final int BUFFER_SIZE = 128 * 1024;
+
+    @Override
+    public long append(InputStream body, FileChannel target, long position, ByteObserver observer) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        int read;
+        long written = 0;
+        while ((read = body.read(buf)) != -1) {
+            ByteBuffer data = ByteBuffer.wrap(buf, 0, read);
+            observer.accept(data.duplicate());
+            while (data.hasRemaining()) {
+                written += target.write(data, position + written);
+            }
+        }
+        return written;
+    }
+}
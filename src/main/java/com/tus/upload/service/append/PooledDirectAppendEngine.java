@@ -0,0 +1,62 @@
+package com.tus.upload.service.append;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the body into a pooled off-heap buffer and writes it to the file channel from there.
+ * What it saves is the large per-request buffer and the JDK's temporary direct buffer on
+ * the file write. It is not copy-free: Channels.newChannel wraps the servlet stream with
+ * its own small heap buffer per request (copied into the direct buffer), and the SHA-1
+ * observer copies the direct buffer back to the heap. Not benchmarked yet, hence not the
+ * default engine.
+ * <p>
+ * A buffer is held for the whole PATCH, so the pool bounds concurrent uploads rather
+ * than carrier threads; when it runs dry the request gets a one-off heap buffer
+ * instead of waiting.
+ */
+@Slf4j
+public class PooledDirectAppendEngine implements AppendEngine {
+
+    private final BlockingQueue<ByteBuffer> pool;
+    private final int bufferSize;
+
+    public PooledDirectAppendEngine(int poolSize, int bufferSize) {
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+        this.bufferSize = bufferSize;
+        for (int i = 0; i < poolSize; i++) {
+            pool.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        log.info("Direct append buffer pool: {} x {} KB", poolSize, bufferSize / 1024);
+    }
+
+    @Override
+    public long append(InputStream body, FileChannel target, long position, ByteObserver observer) throws IOException {
+        ByteBuffer pooled = pool.poll();
+        ByteBuffer buf = pooled != null ? pooled : ByteBuffer.allocate(bufferSize);
+        try {
+            ReadableByteChannel in = Channels.newChannel(body);
+            long written = 0;
+            while (true) {
+                buf.clear();
+                if (in.read(buf) < 0) break;
+                buf.flip();
+                observer.accept(buf.duplicate());
+                while (buf.hasRemaining()) {
+                    written += target.write(buf, position + written);
+                }
+            }
+            return written;
+        } finally {
+            if (pooled != null) pool.offer(pooled);
+        }
+    }
+}
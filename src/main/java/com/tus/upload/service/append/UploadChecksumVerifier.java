@@ -0,0 +1,76 @@
+package com.tus.upload.service.append;
+
+import com.tus.upload.exception.UploadException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * tus "checksum" extension: verifies the {@code Upload-Checksum} of one PATCH body
+ * while it streams through the append engine, so no second pass over the data is needed.
+ */
+public final class UploadChecksumVerifier implements ByteObserver {
+
+    public static final List<String> ALGORITHMS = List.of("sha1", "sha256", "crc32c");
+
+    private final MessageDigest digest;
+    private final CRC32C crc32c;
+    private final byte[] expected;
+
+    private UploadChecksumVerifier(MessageDigest digest, CRC32C crc32c, byte[] expected) {
+        this.digest = digest;
+        this.crc32c = crc32c;
+        this.expected = expected;
+    }
+
+    /**
+     * Parses {@code "<algorithm> <base64 checksum>"}; returns null when the header is absent.
+     * Unsupported algorithms and malformed values are a 400, as the spec requires.
+     */
+    public static UploadChecksumVerifier parse(String header) {
+        if (header == null || header.isBlank()) return null;
+
+        String[] parts = header.trim().split(" ");
+        if (parts.length != 2) {
+            throw new UploadException(HttpStatus.BAD_REQUEST, "Malformed Upload-Checksum header");
+        }
+        byte[] expected;
+        try {
+            expected = Base64.getDecoder().decode(parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new UploadException(HttpStatus.BAD_REQUEST, "Upload-Checksum is not valid base64");
+        }
+
+        try {
+            return switch (parts[0].toLowerCase()) {
+                case "sha1" -> new UploadChecksumVerifier(MessageDigest.getInstance("SHA-1"), null, expected);
+                case "sha256" -> new UploadChecksumVerifier(MessageDigest.getInstance("SHA-256"), null, expected);
+                case "crc32c" -> new UploadChecksumVerifier(null, new CRC32C(), expected);
+                default -> throw new UploadException(HttpStatus.BAD_REQUEST, "Unsupported checksum algorithm: " + parts[0]);
+            };
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void accept(ByteBuffer data) {
+        if (digest != null) {
+            digest.update(data);
+        } else {
+            crc32c.update(data);
+        }
+    }
+
+    public boolean matches() {
+        byte[] actual = digest != null
+                ? digest.digest()
+                : ByteBuffer.allocate(4).putInt((int) crc32c.getValue()).array();
+        return MessageDigest.isEqual(actual, expected);
+    }
+}
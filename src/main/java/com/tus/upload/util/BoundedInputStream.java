@@ -0,0 +1,61 @@
+package com.tus.upload.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Exposes the next {@code limit} bytes of a stream as their own stream, e.g. one frame of a
+ * multi-chunk request body. Closing it does not close the underlying stream.
+ */
+public class BoundedInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    public BoundedInputStream(InputStream in, long limit) {
+        super(in);
+        this.remaining = limit;
+    }
+
+    public long remaining() {
+        return remaining;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) return -1;
+        int b = in.read();
+        if (b >= 0) remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) return -1;
+        int n = in.read(b, off, (int) Math.min(len, remaining));
+        if (n > 0) remaining -= n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(Math.min(n, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public void close() {
+        // the frame does not own the underlying stream
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
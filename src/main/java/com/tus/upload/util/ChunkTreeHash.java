@@ -0,0 +1,77 @@
+package com.tus.upload.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+/**
+ * Whole-file digest of a chunked upload as a SHA-256 tree hash over the per-chunk SHA-256
+ * digests, laid out like RFC 6962 (leaf = H(0x00 || chunkDigest), node = H(0x01 || left || right),
+ * left subtree = largest power of two below n). Subtrees are computed on a fork-join pool,
+ * so chunks whose digest must still be read from disk are hashed in parallel.
+ */
+public final class ChunkTreeHash {
+
+    private static final int SEQUENTIAL_THRESHOLD = 64;
+
+    private ChunkTreeHash() {}
+
+    /** {@code chunkDigest} returns the SHA-256 of chunk i; it may block on I/O. */
+    public static byte[] root(int chunks, IntFunction<byte[]> chunkDigest, ForkJoinPool pool) {
+        if (chunks <= 0) return sha256().digest();
+        return pool.invoke(new Subtree(chunkDigest, 0, chunks));
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hashTree(IntFunction<byte[]> chunkDigest, int from, int to) {
+        if (to - from == 1) return leaf(chunkDigest.apply(from));
+        int split = from + Integer.highestOneBit(to - from - 1);
+        return node(hashTree(chunkDigest, from, split), hashTree(chunkDigest, split, to));
+    }
+
+    private static byte[] leaf(byte[] chunkDigest) {
+        MessageDigest md = sha256();
+        md.update((byte) 0x00);
+        md.update(chunkDigest);
+        return md.digest();
+    }
+
+    private static byte[] node(byte[] left, byte[] right) {
+        MessageDigest md = sha256();
+        md.update((byte) 0x01);
+        md.update(left);
+        md.update(right);
+        return md.digest();
+    }
+
+    private static final class Subtree extends RecursiveTask<byte[]> {
+        private final IntFunction<byte[]> chunkDigest;
+        private final int from;
+        private final int to;
+
+        Subtree(IntFunction<byte[]> chunkDigest, int from, int to) {
+            this.chunkDigest = chunkDigest;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected byte[] compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) return hashTree(chunkDigest, from, to);
+            int split = from + Integer.highestOneBit(to - from - 1);
+            Subtree left = new Subtree(chunkDigest, from, split);
+            left.fork();
+            byte[] right = new Subtree(chunkDigest, split, to).compute();
+            return node(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.tus.upload.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SHA-1 whose intermediate state can be exported and restored.
+ * MessageDigest keeps its state private, so a digest started in one PATCH
+ * could not otherwise survive until the next PATCH (or a restart).
+ * Output is identical to MessageDigest.getInstance("SHA-1"), which is what
+ * TusAppUtils.calculateChecksum stores in asset.checksum.
+ */
+public final class ResumableSha1 {
+
+    private static final byte STATE_VERSION = 1;
+    // version + h0..h4 + total length + partial block
+    private static final int STATE_SIZE = 1 + 5 * 4 + 8 + 64;
+
+    private final int[] h = new int[5];
+    private final int[] w = new int[80];
+    private final byte[] block = new byte[64];
+    private byte[] scratch;
+    private long length;
+
+    public ResumableSha1() {
+        h[0] = 0x67452301;
+        h[1] = 0xEFCDAB89;
+        h[2] = 0x98BADCFE;
+        h[3] = 0x10325476;
+        h[4] = 0xC3D2E1F0;
+    }
+
+    /** Number of bytes hashed so far. */
+    public long length() {
+        return length;
+    }
+
+    public void update(byte[] in, int off, int len) {
+        int buffered = (int) (length & 63);
+        length += len;
+        if (buffered > 0) {
+            int n = Math.min(64 - buffered, len);
+            System.arraycopy(in, off, block, buffered, n);
+            off += n;
+            len -= n;
+            if (buffered + n < 64) return;
+            compress(block, 0);
+        }
+        while (len >= 64) {
+            compress(in, off);
+            off += 64;
+            len -= 64;
+        }
+        if (len > 0) System.arraycopy(in, off, block, 0, len);
+    }
+
+    /** Consumes the remaining bytes of the buffer (heap or direct). */
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        if (scratch == null) scratch = new byte[8 * 1024];
+        while (buffer.hasRemaining()) {
+            int n = Math.min(scratch.length, buffer.remaining());
+            buffer.get(scratch, 0, n);
+            update(scratch, 0, n);
+        }
+    }
+
+    /** Returns the digest of everything hashed so far; this instance can keep being updated. */
+    public byte[] digest() {
+        ResumableSha1 tail = restore(exportState());
+        long bitLength = length << 3;
+        int buffered = (int) (length & 63);
+        byte[] pad = new byte[(buffered < 56 ? 56 : 120) - buffered + 8];
+        pad[0] = (byte) 0x80;
+        for (int i = 0; i < 8; i++) {
+            pad[pad.length - 1 - i] = (byte) (bitLength >>> (8 * i));
+        }
+        tail.update(pad, 0, pad.length);
+
+        byte[] out = new byte[20];
+        ByteBuffer.wrap(out).putInt(tail.h[0]).putInt(tail.h[1]).putInt(tail.h[2]).putInt(tail.h[3]).putInt(tail.h[4]);
+        return out;
+    }
+
+    public byte[] exportState() {
+        ByteBuffer state = ByteBuffer.allocate(STATE_SIZE);
+        state.put(STATE_VERSION);
+        for (int v : h) state.putInt(v);
+        state.putLong(length);
+        state.put(block);
+        return state.array();
+    }
+
+    /**
+     * Rebuilds a digest from {@link #exportState()} output.
+     * Returns null when the state is missing or was written by an incompatible version.
+     */
+    public static ResumableSha1 restore(byte[] exported) {
+        if (exported == null || exported.length != STATE_SIZE || exported[0] != STATE_VERSION) {
+            return null;
+        }
+        ByteBuffer state = ByteBuffer.wrap(exported, 1, STATE_SIZE - 1);
+        ResumableSha1 sha1 = new ResumableSha1();
+        for (int i = 0; i < 5; i++) sha1.h[i] = state.getInt();
+        sha1.length = state.getLong();
+        state.get(sha1.block);
+        return sha1;
+    }
+
+    /**
+     * One 64-byte block. The four round groups are separate loops so no round branches on
+     * its index; the JIT unrolls these well. Still slower than the JDK's intrinsic SHA-1,
+     * which is the price of an exportable state.
+     */
+    private void compress(byte[] in, int off) {
+        int[] w = this.w;
+        for (int i = 0; i < 16; i++, off += 4) {
+            w[i] = ((in[off] & 0xff) << 24) | ((in[off + 1] & 0xff) << 16)
+                    | ((in[off + 2] & 0xff) << 8) | (in[off + 3] & 0xff);
+        }
+        for (int i = 16; i < 80; i++) {
+            w[i] = Integer.rotateLeft(w[i - 3] ^ w[i - 8] ^ w[i - 14] ^ w[i - 16], 1);
+        }
+
+        int a = h[0], b = h[1], c = h[2], d = h[3], e = h[4];
+        int t;
+        for (int i = 0; i < 20; i++) {
+            t = Integer.rotateLeft(a, 5) + ((b & c) | (~b & d)) + e + 0x5A827999 + w[i];
+            e = d; d = c; c = Integer.rotateLeft(b, 30); b = a; a = t;
+        }
+        for (int i = 20; i < 40; i++) {
+            t = Integer.rotateLeft(a, 5) + (b ^ c ^ d) + e + 0x6ED9EBA1 + w[i];
+            e = d; d = c; c = Integer.rotateLeft(b, 30); b = a; a = t;
+        }
+        for (int i = 40; i < 60; i++) {
+            t = Integer.rotateLeft(a, 5) + ((b & c) | (b & d) | (c & d)) + e + 0x8F1BBCDC + w[i];
+            e = d; d = c; c = Integer.rotateLeft(b, 30); b = a; a = t;
+        }
+        for (int i = 60; i < 80; i++) {
+            t = Integer.rotateLeft(a, 5) + (b ^ c ^ d) + e + 0xCA62C1D6 + w[i];
+            e = d; d = c; c = Integer.rotateLeft(b, 30); b = a; a = t;
+        }
+        h[0] += a;
+        h[1] += b;
+        h[2] += c;
+        h[3] += d;
+        h[4] += e;
+    }
+}
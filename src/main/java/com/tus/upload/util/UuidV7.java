@@ -0,0 +1,43 @@
+package com.tus.upload.util;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.UUID;
+
+/**
+ * RFC 9562 version 7 UUIDs: 48 bits of Unix millis followed by 74 random bits.
+ * New ids sort after older ones, so primary key / tus_id index inserts land on the
+ * right-most B-tree page instead of a random one. The random part stays unguessable
+ * (tusIds are in upload URLs), same as {@link UUID#randomUUID()}.
+ */
+public final class UuidV7 {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private UuidV7() {}
+
+    public static UUID randomUUID() {
+        long millis = System.currentTimeMillis();
+        long msb = (millis << 16) | 0x7000L | (RANDOM.nextLong() & 0x0FFFL);
+        long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    /** Hibernate side of {@link com.tus.upload.entity.UuidV7Id}; keeps an id set by the caller. */
+    public static class Generator implements BeforeExecutionGenerator {
+        @Override
+        public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+            return currentValue != null ? currentValue : randomUUID();
+        }
+
+        @Override
+        public EnumSet<EventType> getEventTypes() {
+            return EventTypeSets.INSERT_ONLY;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+-- Tables owned by this service.
+-- Databases created by ddl-auto=update before migrations existed are baselined at 0, so this
+-- script runs there too: everything is IF NOT EXISTS and only fills in what is missing.
+
+CREATE TABLE IF NOT EXISTS v2_tus_uploads (
+    id             uuid PRIMARY KEY,
+    tus_id         varchar(255) NOT NULL,
+    upload_length  bigint,
+    upload_offset  bigint,
+    metadata       text,
+    filename       varchar(255),
+    filetype       varchar(255),
+    temp_path      varchar(255),
+    final_path     varchar(255),
+    status         varchar(32),
+    created_at     timestamp(6) with time zone,
+    updated_at     timestamp(6) with time zone
+);
+
+ALTER TABLE v2_tus_uploads ADD COLUMN IF NOT EXISTS asset_id uuid;
+ALTER TABLE v2_tus_uploads ADD COLUMN IF NOT EXISTS user_id varchar(255);
+ALTER TABLE v2_tus_uploads ADD COLUMN IF NOT EXISTS checksum_state bytea;
+ALTER TABLE v2_tus_uploads ADD COLUMN IF NOT EXISTS concat_type varchar(16);
+ALTER TABLE v2_tus_uploads ADD COLUMN IF NOT EXISTS concat_parts text;
+-- Node currently allowed to write (or finalize) an upload, see TusLeaseRepository
+ALTER TABLE v2_tus_uploads ADD COLUMN IF NOT EXISTS lease_owner varchar(64);
+ALTER TABLE v2_tus_uploads ADD COLUMN IF NOT EXISTS lease_until timestamp(6) with time zone;
+-- Upload-Metadata and concat part lists easily exceed 255 characters (no rewrite in Postgres)
+ALTER TABLE v2_tus_uploads ALTER COLUMN metadata TYPE text;
+ALTER TABLE v2_tus_uploads ALTER COLUMN concat_parts TYPE text;
+-- Hibernate generated these with the enum values of the time (no COMPLETING, EXPIRED, ...)
+ALTER TABLE v2_tus_uploads DROP CONSTRAINT IF EXISTS v2_tus_uploads_status_check;
+ALTER TABLE v2_tus_uploads DROP CONSTRAINT IF EXISTS v2_tus_uploads_concat_type_check;
+
+-- findByTusId is on every HEAD/PATCH
+CREATE UNIQUE INDEX IF NOT EXISTS ux_v2_tus_uploads_tus_id ON v2_tus_uploads (tus_id);
+-- expiration reaper and the stuck-completion sweep
+CREATE INDEX IF NOT EXISTS idx_v2_tus_uploads_status_updated_at ON v2_tus_uploads (status, updated_at);
+
+
+CREATE TABLE IF NOT EXISTS v2_uploads (
+    id            uuid PRIMARY KEY,
+    filename      varchar(255),
+    content_type  varchar(255),
+    total_size    bigint NOT NULL,
+    chunk_size    integer NOT NULL,
+    total_chunks  integer NOT NULL,
+    status        varchar(32),
+    created_at    timestamp(6) with time zone,
+    updated_at    timestamp(6) with time zone
+);
+
+ALTER TABLE v2_uploads ADD COLUMN IF NOT EXISTS storage_mode varchar(16);
+ALTER TABLE v2_uploads ADD COLUMN IF NOT EXISTS received_bitmap bytea;
+ALTER TABLE v2_uploads ADD COLUMN IF NOT EXISTS content_hash bytea;
+ALTER TABLE v2_uploads DROP CONSTRAINT IF EXISTS v2_uploads_status_check;
+ALTER TABLE v2_uploads DROP CONSTRAINT IF EXISTS v2_uploads_storage_mode_check;
+
+CREATE INDEX IF NOT EXISTS idx_v2_uploads_status_updated_at ON v2_uploads (status, updated_at);
+
+
+-- The (upload_id, idx) primary key also serves findByUploadId and the ON CONFLICT of
+-- UploadChunkBatchRepository
+CREATE TABLE IF NOT EXISTS v2_upload_chunks (
+    upload_id    uuid NOT NULL,
+    idx          integer NOT NULL,
+    size         integer NOT NULL,
+    checksum     varchar(255),
+    stored_path  varchar(255),
+    received_at  timestamp(6) with time zone,
+    PRIMARY KEY (upload_id, idx)
+);
+
+
+-- Content-addressed blob store, see ContentBlobStore and ContentBlobNativeRepository
+CREATE TABLE IF NOT EXISTS content_blobs (
+    checksum    varchar(40) PRIMARY KEY,  -- SHA-1 hex
+    path        text NOT NULL,
+    size        bigint NOT NULL,
+    ref_count   bigint NOT NULL,          -- rows in content_blob_refs
+    created_at  timestamp(6) with time zone NOT NULL,
+    updated_at  timestamp(6) with time zone NOT NULL
+);
+
+-- ContentBlobReclaimer: blobs whose last reference went away
+CREATE INDEX IF NOT EXISTS idx_content_blobs_unreferenced ON content_blobs (updated_at) WHERE ref_count <= 0;
+
+-- One row per asset sharing a blob; no FK to assets, which are deleted by other services
+CREATE TABLE IF NOT EXISTS content_blob_refs (
+    asset_id    uuid PRIMARY KEY,
+    checksum    varchar(40) NOT NULL REFERENCES content_blobs (checksum)
+);
+
+CREATE INDEX IF NOT EXISTS idx_content_blob_refs_checksum ON content_blob_refs (checksum);
+
+
+-- Transactional outbox for post-upload jobs, see JobOutboxRelay
+CREATE TABLE IF NOT EXISTS job_outbox (
+    id          bigserial PRIMARY KEY,
+    queue       varchar(255) NOT NULL,
+    payload     text NOT NULL,
+    created_at  timestamp(6) with time zone NOT NULL
+);
@@ -0,0 +1,7 @@
+-- Indexes owned by this service on tables managed elsewhere (the assets table comes from tus-common-service)
+-- CONCURRENTLY, so building them does not block writes to assets. That cannot run inside a
+-- transaction, hence executeInTransaction=false in V2__asset_indexes.sql.conf. A failed build
+-- leaves an INVALID index that IF NOT EXISTS would skip: drop it before migrating again.
+
+-- tus dedup probe: "which of these checksums does this user already have"
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_assets_owner_id_checksum ON assets (owner_id, checksum);
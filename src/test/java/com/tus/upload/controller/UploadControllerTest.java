@@ -0,0 +1,88 @@
+package com.tus.upload.controller;
+
+import com.tus.upload.controller.UploadController.ByteRange;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadControllerTest {
+
+    private static final String ETAG = "\"3e8-18f2a\"";
+    private static final long LAST_MODIFIED = 1_700_000_000_123L;
+
+    private static MockHttpServletRequest ifRange(String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (value != null) request.addHeader(HttpHeaders.IF_RANGE, value);
+        return request;
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC));
+    }
+
+    @Test
+    void parsesSingleAndOpenEndedRanges() {
+        assertEquals(List.of(new ByteRange(0, 499)), UploadController.parseRanges("bytes=0-499", 1000));
+        assertEquals(List.of(new ByteRange(500, 999)), UploadController.parseRanges("bytes=500-", 1000));
+        assertEquals(List.of(new ByteRange(900, 999)), UploadController.parseRanges("bytes=900-5000", 1000));
+    }
+
+    @Test
+    void parsesSuffixRanges() {
+        assertEquals(List.of(new ByteRange(900, 999)), UploadController.parseRanges("bytes=-100", 1000));
+        assertEquals(List.of(new ByteRange(0, 999)), UploadController.parseRanges("bytes=-5000", 1000));
+        assertEquals(List.of(), UploadController.parseRanges("bytes=-0", 1000));
+    }
+
+    @Test
+    void parsesMultipleRanges() {
+        List<ByteRange> ranges = UploadController.parseRanges("bytes=0-0, 10-19,-1", 1000);
+        assertEquals(List.of(new ByteRange(0, 0), new ByteRange(10, 19), new ByteRange(999, 999)), ranges);
+        assertEquals(10, ranges.get(1).length());
+        assertEquals("bytes 10-19/1000", ranges.get(1).contentRange(1000));
+    }
+
+    @Test
+    void dropsUnsatisfiableRanges() {
+        assertEquals(List.of(new ByteRange(0, 9)), UploadController.parseRanges("bytes=0-9,1000-1010", 1000));
+        assertEquals(List.of(), UploadController.parseRanges("bytes=1000-", 1000));
+    }
+
+    @Test
+    void ignoresMalformedHeaders() {
+        assertNull(UploadController.parseRanges("items=0-9", 1000));
+        assertNull(UploadController.parseRanges("bytes=9-0", 1000));
+        assertNull(UploadController.parseRanges("bytes=abc", 1000));
+        assertNull(UploadController.parseRanges("bytes=1-x", 1000));
+        assertNull(UploadController.parseRanges("bytes=" + "0-0,".repeat(17), 1000));
+    }
+
+    @Test
+    void ifRangeWithoutHeaderAlwaysMatches() {
+        assertTrue(UploadController.ifRangeMatches(ifRange(null), ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void ifRangeComparesEtagsStrongly() {
+        assertTrue(UploadController.ifRangeMatches(ifRange(ETAG), ETAG, LAST_MODIFIED));
+        assertFalse(UploadController.ifRangeMatches(ifRange("\"other\""), ETAG, LAST_MODIFIED));
+        assertFalse(UploadController.ifRangeMatches(ifRange("W/" + ETAG), ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void ifRangeComparesDatesToTheSecond() {
+        assertTrue(UploadController.ifRangeMatches(ifRange(httpDate(LAST_MODIFIED)), ETAG, LAST_MODIFIED));
+        assertFalse(UploadController.ifRangeMatches(ifRange(httpDate(LAST_MODIFIED - 1000)), ETAG, LAST_MODIFIED));
+        assertFalse(UploadController.ifRangeMatches(ifRange("not a date"), ETAG, LAST_MODIFIED));
+    }
+}
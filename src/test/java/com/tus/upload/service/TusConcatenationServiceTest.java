@@ -0,0 +1,30 @@
+package com.tus.upload.service;
+
+import com.tus.upload.exception.UploadException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TusConcatenationServiceTest {
+
+    @Test
+    void takesTheIdFromEachPartialUrl() {
+        assertEquals(List.of("a1", "b2", "c3"), TusConcatenationService.parseFinalParts(
+                "final;https://host/api/v1/files/a1 /api/v1/files/b2/ c3"));
+    }
+
+    @Test
+    void toleratesExtraWhitespace() {
+        assertEquals(List.of("a1", "b2"), TusConcatenationService.parseFinalParts("final;  /files/a1 \t /files/b2  "));
+    }
+
+    @Test
+    void rejectsAFinalUploadWithoutParts() {
+        UploadException e = assertThrows(UploadException.class, () -> TusConcatenationService.parseFinalParts("final; "));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+}
@@ -0,0 +1,43 @@
+package com.tus.upload.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class UploadServiceTest {
+
+    // SHA-256 of "abc"
+    private static final String HEX = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Test
+    void acceptsHexInAnyCase() {
+        assertEquals(HEX, UploadService.expectedSha256(HEX));
+        assertEquals(HEX, UploadService.expectedSha256(HEX.toUpperCase()));
+        assertEquals(HEX, UploadService.expectedSha256("  " + HEX + " "));
+    }
+
+    @Test
+    void acceptsBase64() {
+        String base64 = Base64.getEncoder().encodeToString(HexFormat.of().parseHex(HEX));
+        assertEquals(HEX, UploadService.expectedSha256(base64));
+        assertEquals(HEX, UploadService.expectedSha256("sha256 " + base64));
+    }
+
+    @Test
+    void stripsTheAlgorithmPrefix() {
+        assertEquals(HEX, UploadService.expectedSha256("sha256:" + HEX));
+        assertEquals(HEX, UploadService.expectedSha256("SHA256 " + HEX));
+    }
+
+    @Test
+    void ignoresOtherDigests() {
+        assertNull(UploadService.expectedSha256("a9993e364706816aba3e25717850c26c9cd0d89d")); // SHA-1
+        assertNull(UploadService.expectedSha256("md5:900150983cd24fb0d6963f7d28e17f72"));
+        assertNull(UploadService.expectedSha256(HEX.substring(1) + "g"));
+        assertNull(UploadService.expectedSha256("not base64!"));
+    }
+}
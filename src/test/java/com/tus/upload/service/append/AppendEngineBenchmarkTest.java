@@ -0,0 +1,93 @@
+package com.tus.upload.service.append;
+
+import com.tus.upload.util.ResumableSha1;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Append engines against each other; heap is the original copy loop. Each PATCH body is
+ * served in reads of at most 8 KB, like the servlet input stream, and written to a temp
+ * file, once with the incremental SHA-1 attached and once copying only (transfer cannot
+ * observe bytes, so it never hashes).
+ * <p>
+ * Excluded from the default build. Run with
+ * {@code mvn test -Dgroups=benchmark -DexcludedGroups= -Dtest=AppendEngineBenchmarkTest}
+ * (optionally -Dbenchmark.patch-mb=... -Dbenchmark.patches=...) and compare the printed MB/s.
+ */
+@Tag("benchmark")
+class AppendEngineBenchmarkTest {
+
+    private static final int PATCH_BYTES = Integer.getInteger("benchmark.patch-mb", 16) << 20;
+    private static final int PATCHES = Integer.getInteger("benchmark.patches", 32);
+    private static final int READ_SIZE = 8 * 1024;
+
+    @Test
+    void appendThroughput() throws IOException {
+        byte[] body = new byte[PATCH_BYTES];
+        new Random(42).nextBytes(body);
+        AppendEngine[] engines = {
+                new HeapAppendEngine(),
+                new PooledDirectAppendEngine(4, 128 * 1024),
+                new TransferAppendEngine()
+        };
+        System.out.printf("%-28s %12s %12s%n", "engine", "sha1 MB/s", "copy MB/s");
+        for (AppendEngine engine : engines) {
+            run(engine, body, true); // warm-up
+            System.out.printf("%-28s %,12.0f %,12.0f%n", engine.getClass().getSimpleName(),
+                    run(engine, body, true), run(engine, body, false));
+        }
+    }
+
+    private static double run(AppendEngine engine, byte[] body, boolean hash) throws IOException {
+        Path file = Files.createTempFile("append-bench", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ResumableSha1 sha1 = new ResumableSha1();
+            ByteObserver observer = hash && engine.observesBytes() ? sha1::update : ByteObserver.NONE;
+            long start = System.nanoTime();
+            long position = 0;
+            for (int i = 0; i < PATCHES; i++) {
+                position += engine.append(new ServletLikeStream(body), channel, position, observer);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            assertEquals((long) PATCH_BYTES * PATCHES, position);
+            return position / seconds / (1 << 20);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /** Hands out at most READ_SIZE bytes per read, like a servlet input stream. */
+    private static final class ServletLikeStream extends InputStream {
+
+        private final byte[] data;
+        private int position;
+
+        ServletLikeStream(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= data.length) return -1;
+            int n = Math.min(Math.min(len, READ_SIZE), data.length - position);
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
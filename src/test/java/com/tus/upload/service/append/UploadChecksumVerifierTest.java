@@ -0,0 +1,69 @@
+package com.tus.upload.service.append;
+
+import com.tus.upload.exception.UploadException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadChecksumVerifierTest {
+
+    private static final byte[] BODY = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+
+    private static String base64(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /** Feeds BODY in a few slices, like an append engine does. */
+    private static boolean verify(String header, byte[] body) {
+        UploadChecksumVerifier verifier = UploadChecksumVerifier.parse(header);
+        for (int from = 0; from < body.length; from += 10) {
+            verifier.accept(ByteBuffer.wrap(body, from, Math.min(10, body.length - from)));
+        }
+        return verifier.matches();
+    }
+
+    @Test
+    void verifiesEachAlgorithm() throws Exception {
+        CRC32C crc = new CRC32C();
+        crc.update(BODY);
+        byte[] crcBytes = ByteBuffer.allocate(4).putInt((int) crc.getValue()).array();
+
+        assertTrue(verify("sha1 " + base64(MessageDigest.getInstance("SHA-1").digest(BODY)), BODY));
+        assertTrue(verify("sha256 " + base64(MessageDigest.getInstance("SHA-256").digest(BODY)), BODY));
+        assertTrue(verify("crc32c " + base64(crcBytes), BODY));
+        assertTrue(verify("SHA1 " + base64(MessageDigest.getInstance("SHA-1").digest(BODY)), BODY));
+    }
+
+    @Test
+    void detectsCorruptedBodies() throws Exception {
+        String header = "sha1 " + base64(MessageDigest.getInstance("SHA-1").digest(BODY));
+        byte[] corrupted = BODY.clone();
+        corrupted[5] ^= 1;
+        assertFalse(verify(header, corrupted));
+    }
+
+    @Test
+    void absentHeaderMeansNoVerification() {
+        assertNull(UploadChecksumVerifier.parse(null));
+        assertNull(UploadChecksumVerifier.parse(" "));
+    }
+
+    @Test
+    void rejectsBadHeadersWith400() {
+        for (String header : new String[] {"sha1", "sha1 a b", "sha1 %%%", "md5 " + base64(new byte[16])}) {
+            UploadException e = assertThrows(UploadException.class, () -> UploadChecksumVerifier.parse(header), header);
+            assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+        }
+    }
+}
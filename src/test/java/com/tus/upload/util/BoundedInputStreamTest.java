@@ -0,0 +1,54 @@
+package com.tus.upload.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BoundedInputStreamTest {
+
+    private static byte[] data(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = (byte) i;
+        return bytes;
+    }
+
+    @Test
+    void stopsAtTheLimit() throws Exception {
+        InputStream in = new ByteArrayInputStream(data(100));
+        BoundedInputStream frame = new BoundedInputStream(in, 40);
+        assertArrayEquals(Arrays.copyOf(data(100), 40), frame.readAllBytes());
+        assertEquals(0, frame.remaining());
+        assertEquals(-1, frame.read());
+        assertEquals(-1, frame.read(new byte[8], 0, 8));
+        // the rest is still there for the next frame
+        assertEquals(40, in.read());
+    }
+
+    @Test
+    void consecutiveFramesSplitTheStream() throws Exception {
+        byte[] all = data(250);
+        InputStream in = new ByteArrayInputStream(all);
+        BoundedInputStream first = new BoundedInputStream(in, 100);
+        assertArrayEquals(Arrays.copyOfRange(all, 0, 100), first.readAllBytes());
+        first.close();
+        BoundedInputStream second = new BoundedInputStream(in, 200);
+        assertArrayEquals(Arrays.copyOfRange(all, 100, 250), second.readAllBytes());
+        assertEquals(50, second.remaining());
+    }
+
+    @Test
+    void singleByteReadsAndSkipCountDown() throws Exception {
+        BoundedInputStream frame = new BoundedInputStream(new ByteArrayInputStream(data(20)), 10);
+        assertEquals(0, frame.read());
+        assertEquals(5, frame.skip(5));
+        assertEquals(4, frame.available());
+        assertEquals(4, frame.skip(100));
+        assertEquals(0, frame.remaining());
+        assertEquals(-1, frame.read());
+    }
+}
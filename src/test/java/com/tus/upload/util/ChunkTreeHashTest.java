@@ -0,0 +1,59 @@
+package com.tus.upload.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class ChunkTreeHashTest {
+
+    private static byte[] sha256(byte[]... parts) {
+        MessageDigest md = ChunkTreeHash.sha256();
+        for (byte[] part : parts) md.update(part);
+        return md.digest();
+    }
+
+    private static final IntFunction<byte[]> CHUNK_DIGEST = i -> sha256(new byte[] {(byte) i, (byte) (i >> 8)});
+
+    /** RFC 6962 Merkle tree hash, written out recursively without any forking. */
+    private static byte[] reference(int from, int to) {
+        if (to - from == 1) return sha256(new byte[] {0x00}, CHUNK_DIGEST.apply(from));
+        int k = Integer.highestOneBit(to - from - 1);
+        return sha256(new byte[] {0x01}, reference(from, from + k), reference(from + k, to));
+    }
+
+    @Test
+    void emptyUploadHashesToTheEmptyDigest() {
+        assertArrayEquals(sha256(), ChunkTreeHash.root(0, CHUNK_DIGEST, ForkJoinPool.commonPool()));
+    }
+
+    @Test
+    void singleChunkIsOneLeaf() {
+        assertArrayEquals(sha256(new byte[] {0x00}, CHUNK_DIGEST.apply(0)),
+                ChunkTreeHash.root(1, CHUNK_DIGEST, ForkJoinPool.commonPool()));
+    }
+
+    @Test
+    void threeChunksSplitTwoAndOne() {
+        byte[] left = sha256(new byte[] {0x01},
+                sha256(new byte[] {0x00}, CHUNK_DIGEST.apply(0)),
+                sha256(new byte[] {0x00}, CHUNK_DIGEST.apply(1)));
+        byte[] expected = sha256(new byte[] {0x01}, left, sha256(new byte[] {0x00}, CHUNK_DIGEST.apply(2)));
+        assertArrayEquals(expected, ChunkTreeHash.root(3, CHUNK_DIGEST, ForkJoinPool.commonPool()));
+    }
+
+    @Test
+    void parallelSubtreesMatchTheSequentialTree() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunks : new int[] {2, 63, 64, 65, 128, 129, 1000}) {
+                assertArrayEquals(reference(0, chunks), ChunkTreeHash.root(chunks, CHUNK_DIGEST, pool), chunks + " chunks");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.tus.upload.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResumableSha1Test {
+
+    private static byte[] data(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] jdkSha1(byte[] in) throws Exception {
+        return MessageDigest.getInstance("SHA-1").digest(in);
+    }
+
+    @Test
+    void matchesMessageDigestAcrossBlockBoundaries() throws Exception {
+        for (int length = 0; length <= 200; length++) {
+            byte[] in = data(length);
+            ResumableSha1 sha1 = new ResumableSha1();
+            sha1.update(in, 0, in.length);
+            assertArrayEquals(jdkSha1(in), sha1.digest(), "length " + length);
+        }
+    }
+
+    @Test
+    void exportAndRestoreAtEverySplitPoint() throws Exception {
+        byte[] in = data(300);
+        byte[] expected = jdkSha1(in);
+        for (int split = 0; split <= in.length; split++) {
+            ResumableSha1 first = new ResumableSha1();
+            first.update(in, 0, split);
+
+            ResumableSha1 second = ResumableSha1.restore(first.exportState());
+            assertEquals(split, second.length());
+            second.update(in, split, in.length - split);
+            assertArrayEquals(expected, second.digest(), "split " + split);
+        }
+    }
+
+    @Test
+    void restoreAcrossSeveralPatches() throws Exception {
+        byte[] in = data(1 << 20);
+        int[] splits = {0, 1, 63, 64, 65, 4096, 100_003, 524_288, in.length};
+        byte[] state = new ResumableSha1().exportState();
+        for (int i = 1; i < splits.length; i++) {
+            ResumableSha1 sha1 = ResumableSha1.restore(state);
+            sha1.update(in, splits[i - 1], splits[i] - splits[i - 1]);
+            state = sha1.exportState();
+        }
+        assertArrayEquals(jdkSha1(in), ResumableSha1.restore(state).digest());
+    }
+
+    @Test
+    void digestDoesNotDisturbFurtherUpdates() throws Exception {
+        byte[] in = data(1000);
+        ResumableSha1 sha1 = new ResumableSha1();
+        sha1.update(in, 0, 500);
+        assertArrayEquals(jdkSha1(Arrays.copyOf(in, 500)), sha1.digest());
+        sha1.update(in, 500, 500);
+        assertArrayEquals(jdkSha1(in), sha1.digest());
+    }
+
+    @Test
+    void directAndHeapBuffersHashTheSame() throws Exception {
+        byte[] in = data(50_000);
+        ByteBuffer direct = ByteBuffer.allocateDirect(in.length).put(in).flip();
+        ResumableSha1 fromDirect = new ResumableSha1();
+        fromDirect.update(direct);
+        ResumableSha1 fromHeap = new ResumableSha1();
+        fromHeap.update(ByteBuffer.wrap(in, 10, in.length - 10).slice());
+
+        assertEquals(0, direct.remaining());
+        assertArrayEquals(jdkSha1(in), fromDirect.digest());
+        assertArrayEquals(jdkSha1(Arrays.copyOfRange(in, 10, in.length)), fromHeap.digest());
+    }
+
+    @Test
+    void rejectsForeignState() {
+        assertNull(ResumableSha1.restore(null));
+        assertNull(ResumableSha1.restore(new byte[10]));
+        byte[] state = new ResumableSha1().exportState();
+        state[0] = 99;
+        assertNull(ResumableSha1.restore(state));
+    }
+}
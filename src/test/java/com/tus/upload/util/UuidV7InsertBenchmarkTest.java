@@ -0,0 +1,112 @@
+package com.tus.upload.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Before/after measurement for the upload table inserts: random v4 vs time-ordered v7 ids,
+ * with reWriteBatchedInserts off and on. Each run inserts into a table with the primary key
+ * and unique tus_id index of v2_tus_uploads that already holds benchmark.preload rows, in
+ * batches of 200 committed one by one (the group-commit batch size).
+ * shared_buffers is kept small so the indexes outgrow it, as they do in production.
+ * <p>
+ * Needs Docker; excluded from the default build. Run with
+ * {@code mvn test -Dgroups=benchmark -DexcludedGroups= -Dtest=UuidV7InsertBenchmarkTest}
+ * (optionally -Dbenchmark.preload=... -Dbenchmark.rows=...) and compare the printed rows/s.
+ */
+@Tag("benchmark")
+@Testcontainers
+class UuidV7InsertBenchmarkTest {
+
+    private static final int BATCH = 200;
+    private static final int PRELOAD = Integer.getInteger("benchmark.preload", 1_000_000);
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 200_000);
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withCommand("postgres", "-c", "shared_buffers=32MB");
+
+    @Test
+    void insertThroughput() throws SQLException {
+        System.out.printf("%-8s %-22s %12s%n", "ids", "reWriteBatchedInserts", "rows/s");
+        for (boolean rewrite : new boolean[]{false, true}) {
+            report("v4", rewrite, run(UUID::randomUUID, rewrite));
+            report("v7", rewrite, run(UuidV7::randomUUID, rewrite));
+        }
+    }
+
+    private static double run(Supplier<UUID> ids, boolean rewrite) throws SQLException {
+        try (Connection connection = connect(rewrite)) {
+            try (Statement ddl = connection.createStatement()) {
+                ddl.execute("DROP TABLE IF EXISTS bench_uploads");
+                ddl.execute("""
+                        CREATE TABLE bench_uploads (
+                            id             uuid PRIMARY KEY,
+                            tus_id         varchar(255) NOT NULL,
+                            upload_length  bigint,
+                            upload_offset  bigint,
+                            status         varchar(32),
+                            updated_at     timestamp(6) with time zone
+                        )""");
+                ddl.execute("CREATE UNIQUE INDEX bench_uploads_tus_id ON bench_uploads (tus_id)");
+            }
+            connection.setAutoCommit(false);
+            insert(connection, ids, PRELOAD);
+
+            long start = System.nanoTime();
+            insert(connection, ids, ROWS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            try (Statement count = connection.createStatement();
+                 var rs = count.executeQuery("SELECT count(*) FROM bench_uploads")) {
+                rs.next();
+                assertEquals(PRELOAD + ROWS, rs.getLong(1));
+            }
+            return ROWS / seconds;
+        }
+    }
+
+    private static void insert(Connection connection, Supplier<UUID> ids, int rows) throws SQLException {
+        String sql = "INSERT INTO bench_uploads (id, tus_id, upload_length, upload_offset, status, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 1; i <= rows; i++) {
+                // id and tus_id are separate ids, as for V2TusUpload
+                ps.setObject(1, ids.get());
+                ps.setString(2, ids.get().toString());
+                ps.setLong(3, 1L << 20);
+                ps.setLong(4, 0);
+                ps.setString(5, "PENDING");
+                ps.setTimestamp(6, Timestamp.from(Instant.now()));
+                ps.addBatch();
+                if (i % BATCH == 0 || i == rows) {
+                    ps.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+    }
+
+    private static Connection connect(boolean rewrite) throws SQLException {
+        String url = POSTGRES.getJdbcUrl() + (POSTGRES.getJdbcUrl().contains("?") ? "&" : "?") + "reWriteBatchedInserts=" + rewrite;
+        return DriverManager.getConnection(url, POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+
+    private static void report(String ids, boolean rewrite, double rowsPerSecond) {
+        System.out.printf("%-8s %-22s %,12.0f%n", ids, rewrite, rowsPerSecond);
+    }
+}